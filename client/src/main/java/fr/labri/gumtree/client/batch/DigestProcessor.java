@@ -23,15 +23,19 @@ public class DigestProcessor extends AbstractFileProcessor {
 	
 	private int rRdmTime;
 	
-	private Map<Integer,Set<String>> stdDigests;
+	private int rLongTime;
 	
-	private Map<Integer,Set<String>> rStdDigests;
+	private Map<Long,Set<String>> stdDigests;
 	
-	private Map<Integer,Set<String>> md5Digests;
+	private Map<Long,Set<String>> rStdDigests;
 	
-	private Map<Integer,Set<String>> rMd5Digests;
+	private Map<Long,Set<String>> md5Digests;
 	
-	private Map<Integer,Set<String>> rRdmDigests;
+	private Map<Long,Set<String>> rMd5Digests;
+	
+	private Map<Long,Set<String>> rRdmDigests;
+	
+	private Map<Long,Set<String>> rLongDigests;
 	
 	public static void main(String[] args) {
 		DigestProcessor g = new DigestProcessor(args[0],"/home/falleri/Out/");
@@ -49,11 +53,13 @@ public class DigestProcessor extends AbstractFileProcessor {
 		md5Time = 0;
 		rMd5Time = 0;
 		rRdmTime = 0;
+		rLongTime = 0;
 		stdDigests = new HashMap<>();
 		rStdDigests = new HashMap<>();
 		md5Digests = new HashMap<>();
 		rMd5Digests = new HashMap<>();
 		rRdmDigests = new HashMap<>();
+		rLongDigests = new HashMap<>();
 	}
 
 	@Override
@@ -80,14 +86,19 @@ public class DigestProcessor extends AbstractFileProcessor {
 		updateDigests(tree, rMd5Digests);
 		
 		tic = tic();
-		TreeUtils.computeDigest(tree, new DigestGenerator.RollingMd5HashGenerator());
+		TreeUtils.computeDigest(tree, new DigestGenerator.RollingRdmHashGenerator());
 		rRdmTime += tic() - tic;
 		updateDigests(tree, rRdmDigests);
+		
+		tic = tic();
+		TreeUtils.computeDigest(tree, new DigestGenerator.RollingLongHashGenerator());
+		rLongTime += tic() - tic;
+		updateDigests(tree, rLongDigests);
 	}
 	
-	private void updateDigests(Tree tree, Map<Integer,Set<String>> digests) {
+	private void updateDigests(Tree tree, Map<Long,Set<String>> digests) {
 		for (Tree t: tree.getTrees()) {
-			int digest = t.getDigest();
+			long digest = t.getDigest();
 			if (!digests.containsKey(digest)) digests.put(digest, new HashSet<String>());
 			digests.get(digest).add(t.toDigestTreeString());
 		}
@@ -105,12 +116,14 @@ public class DigestProcessor extends AbstractFileProcessor {
 		result(rMd5Time, rMd5Digests);
 		LOGGER.info("Results for rolling random hash:");
 		result(rRdmTime, rRdmDigests);
+		LOGGER.info("Results for rolling long hash:");
+		result(rLongTime, rLongDigests);
 	}
 	
-	private void result(int time, Map<Integer,Set<String>> digests) {
+	private void result(int time, Map<Long,Set<String>> digests) {
 		LOGGER.info(String.format("Total time: %d", time));
 		int collisions = 0;
-		for (int digest: digests.keySet()) {
+		for (long digest: digests.keySet()) {
 			if (digests.get(digest).size() > 1) {
 				LOGGER.fine("Collision detected for digest: " + digest);
 				LOGGER.fine(digests.get(digest).toString());
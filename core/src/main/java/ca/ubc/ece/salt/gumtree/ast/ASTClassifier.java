@@ -1,6 +1,9 @@
 package ca.ubc.ece.salt.gumtree.ast;
 
 import java.io.InvalidClassException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.Set;
 
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode.ChangeType;
@@ -49,8 +52,8 @@ public class ASTClassifier {
 		/* Classify the children of the classified  AST nodes and assign
 		 * node mappings for MOVED and UPDATED nodes. */
 
-		this.classifyASTNode(this.srcTree, ChangeType.UNCHANGED, true);
-		this.classifyASTNode(this.dstTree, ChangeType.UNCHANGED, false);
+		this.classifySubtree(this.srcTree, ChangeType.UNCHANGED, true);
+		this.classifySubtree(this.dstTree, ChangeType.UNCHANGED, false);
 
 	}
 
@@ -74,16 +77,44 @@ public class ASTClassifier {
 	}
 
 	/**
-	 * Recursively classifies the Tree node's AST nodes with the change type
-	 * of their parent. The classification only occurs if the current node's
+	 * Classifies the Tree node's AST nodes with the change type of their
+	 * parent. The classification only occurs if the current node's
 	 * class is {@code UNCHANGED}. If a node is updated, inserted or removed,
 	 * we also label that node's {@code UNCHANGED} or {@code MOVED} ancestors
-	 * as {@code UPDATED} up to the statement level.
-	 * @param node The node to classify.
-	 * @param changeType The change type to assign the AST node.
+	 * as {@code UPDATED} up to the statement level. The subtree is visited
+	 * in pre-order using an explicit stack, so deep trees do not overflow.
+	 * @param root The root of the subtree to classify.
+	 * @param rootChangeType The change type to assign the root AST node.
 	 * @throws InvalidClassException
 	 */
-	private void classifyASTNode(Tree node, ChangeType changeType, boolean isSrc) throws InvalidClassException {
+	private void classifySubtree(Tree root, ChangeType rootChangeType, boolean isSrc) throws InvalidClassException {
+
+		Deque<Tree> nodes = new ArrayDeque<Tree>();
+		Deque<ChangeType> changeTypes = new ArrayDeque<ChangeType>();
+		nodes.push(root);
+		changeTypes.push(rootChangeType);
+
+		while(!nodes.isEmpty()) {
+			Tree node = nodes.pop();
+			ChangeType changeType = this.classifyASTNode(node, changeTypes.pop(), isSrc);
+
+			/* Classify this node's children with the new change type. The
+			 * children are pushed in reverse order to be visited in order. */
+
+			List<Tree> children = node.getChildren();
+			for(int i = children.size() - 1; i >= 0; i--) {
+				nodes.push(children.get(i));
+				changeTypes.push(changeType);
+			}
+		}
+
+	}
+
+	/**
+	 * Classifies a single node with the change type of its parent.
+	 * @return The change type to assign to the children of the node.
+	 */
+	private ChangeType classifyASTNode(Tree node, ChangeType changeType, boolean isSrc) throws InvalidClassException {
 
 		/* Set the change class for the AST node if it is currently UNCHANGED. */
 
@@ -137,11 +168,7 @@ public class ASTClassifier {
 		if(isSrc) classifiedNode.setVersion(Version.SOURCE);
 		else classifiedNode.setVersion(Version.DESTINATION);
 
-		/* Classify this node's children with the new change type. */
-
-		for(Tree child : node.getChildren()) {
-			classifyASTNode(child, changeType, isSrc);
-		}
+		return changeType;
 
 	}
 
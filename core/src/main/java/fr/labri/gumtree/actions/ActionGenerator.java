@@ -54,7 +54,7 @@ public class ActionGenerator {
 		cpySrcTrees = new TIntObjectHashMap<Tree>();
 		for (Tree t: newSrc.getTrees()) cpySrcTrees.put(t.getId(), t);
 		
-		origMappings = new MappingStore();
+		origMappings = new MappingStore(mappings.size());
 		for (Mapping m: mappings) this.origMappings.link(cpySrcTrees.get(m.getFirst().getId()), m.getSecond());
 		this.newMappings = origMappings.copy();
 	}
@@ -107,7 +107,7 @@ public class ActionGenerator {
 				w = newMappings.getSrc(x);
 				if (!x.equals(origDst)) {
 					Tree v = w.getParent();
-					if (!w.getLabel().equals(x.getLabel())) {
+					if (w.getLabelId() != x.getLabelId()) {
 						actions.add(new Update(origSrcTrees.get(w.getId()), x.getLabel()));
 						w.setLabel(x.getLabel());
 					}
@@ -138,7 +138,7 @@ public class ActionGenerator {
 			}
 		}
 		
-		if (!newSrc.toDigestTreeString().equals(origDst.toDigestTreeString())) {
+		if (!newSrc.isIsomorphic(origDst)) {
 			LOGGER.severe("Trees not isomorphics!");
 			newSrc.refresh();
 //			System.out.println(newSrc.toTreeString());
@@ -0,0 +1,71 @@
+package fr.labri.gumtree.algo;
+
+import java.util.Arrays;
+
+/**
+ * Dice similarity of the 3-grams of two strings padded with two '#' on each side, which gives the same
+ * scores as the simmetrics QGramsDistance. A q-gram is packed in a long, each character using 16 bits,
+ * so the profile of a string is a sorted array of longs and two profiles are compared without allocating.
+ */
+public final class QGrams {
+
+	public static final int Q = 3;
+
+	private static final char PADDING = '#';
+
+	private QGrams() {}
+
+	/**
+	 * Returns the sorted packed q-grams of the padded string, with repetitions.
+	 */
+	public static long[] profile(String s) {
+		int length = s.length() + 2 * (Q - 1);
+		long[] grams = new long[length - Q + 1];
+		for (int i = 0; i < grams.length; i++) {
+			long gram = 0L;
+			for (int j = i; j < i + Q; j++) gram = (gram << 16) | charAt(s, j - (Q - 1));
+			grams[i] = gram;
+		}
+		Arrays.sort(grams);
+		return grams;
+	}
+
+	/**
+	 * Returns the number of q-grams the profiles have in common, counting repetitions.
+	 */
+	public static int common(long[] p1, long[] p2) {
+		int common = 0;
+		int i = 0;
+		int j = 0;
+		while (i < p1.length && j < p2.length) {
+			if (p1[i] < p2[j]) i++;
+			else if (p1[i] > p2[j]) j++;
+			else {
+				common++;
+				i++;
+				j++;
+			}
+		}
+		return common;
+	}
+
+	public static float similarity(long[] p1, long[] p2) {
+		return similarity(common(p1, p2), p1.length, p2.length);
+	}
+
+	public static float similarity(String s1, String s2) {
+		return similarity(profile(s1), profile(s2));
+	}
+
+	/**
+	 * Returns the similarity of two profiles of the given sizes sharing the given number of q-grams.
+	 */
+	public static float similarity(int common, int size1, int size2) {
+		return (float) (2 * common) / (float) (size1 + size2);
+	}
+
+	private static char charAt(String s, int i) {
+		return (i < 0 || i >= s.length()) ? PADDING : s.charAt(i);
+	}
+
+}
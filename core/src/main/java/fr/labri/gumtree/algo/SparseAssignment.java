@@ -0,0 +1,219 @@
+package fr.labri.gumtree.algo;
+
+import java.util.Arrays;
+
+/**
+ * Solver of the assignment problem where only some pairs of workers and jobs are candidates.
+ * A worker can also stay unassigned for a given cost, so the problem always has a solution.
+ * <p>
+ * The workers are assigned one after the other along shortest augmenting paths, found with
+ * Dijkstra's algorithm over the candidate pairs using reduced costs, as in the Jonker-Volgenant
+ * algorithm. Each unassigned state is modeled as a private job of its worker. The time is in
+ * O(n * e * log(e)) and the memory in O(n + m + e), where e is the number of candidate pairs.
+ * This is only an improvement over the Hungarian algorithm, in O(max(n, m)^3) time and O(n * m)
+ * memory, when few pairs are candidates. On dense problems it is up to five times slower.
+ */
+public class SparseAssignment {
+
+	private final int rows;
+
+	private final int cols;
+
+	private int[] candidateRows = new int[16];
+
+	private int[] candidateCols = new int[16];
+
+	private double[] candidateCosts = new double[16];
+
+	private int candidates;
+
+	/**
+	 * @param rows the number of workers.
+	 * @param cols the number of jobs.
+	 */
+	public SparseAssignment(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	/**
+	 * Declare that the worker can be assigned to the job for the given cost, which must be
+	 * non negative.
+	 */
+	public void addCandidate(int row, int col, double cost) {
+		if (candidates == candidateRows.length) {
+			candidateRows = Arrays.copyOf(candidateRows, candidates * 2);
+			candidateCols = Arrays.copyOf(candidateCols, candidates * 2);
+			candidateCosts = Arrays.copyOf(candidateCosts, candidates * 2);
+		}
+		candidateRows[candidates] = row;
+		candidateCols[candidates] = col;
+		candidateCosts[candidates] = cost;
+		candidates++;
+	}
+
+	/**
+	 * Returns an assignment of minimal cost, where element i holds the job of the worker i
+	 * or -1 if the worker is not assigned.
+	 *
+	 * @param unassignedCost the cost of a worker not assigned to any job.
+	 */
+	public int[] execute(double unassignedCost) {
+		// Candidates of each worker in a compressed row storage, followed by the private job
+		// of the worker representing its unassigned state.
+		int nbCols = cols + rows;
+		int[] first = new int[rows + 1];
+		for (int e = 0; e < candidates; e++) first[candidateRows[e] + 1]++;
+		for (int i = 0; i < rows; i++) first[i + 1] += first[i] + 1;
+		int[] edgeCols = new int[candidates + rows];
+		double[] edgeCosts = new double[candidates + rows];
+		int[] next = Arrays.copyOf(first, rows);
+		for (int e = 0; e < candidates; e++) {
+			int i = candidateRows[e];
+			edgeCols[next[i]] = candidateCols[e];
+			edgeCosts[next[i]] = candidateCosts[e];
+			next[i]++;
+		}
+		for (int i = 0; i < rows; i++) {
+			edgeCols[next[i]] = cols + i;
+			edgeCosts[next[i]] = unassignedCost;
+		}
+
+		double[] rowPotentials = new double[rows];
+		double[] colPotentials = new double[nbCols];
+		int[] colByRow = new int[rows];
+		int[] rowByCol = new int[nbCols];
+		Arrays.fill(rowByCol, -1);
+
+		double[] dist = new double[nbCols];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		int[] previousRow = new int[nbCols];
+		boolean[] done = new boolean[nbCols];
+		int[] visited = new int[nbCols];
+		Heap heap = new Heap();
+
+		for (int s = 0; s < rows; s++) {
+			int nbVisited = 0;
+			heap.clear();
+			relax(s, 0D, first, edgeCols, edgeCosts, rowPotentials, colPotentials, dist, previousRow, done, heap);
+			int sink = -1;
+			while (sink == -1) {
+				int j = heap.pop();
+				if (done[j]) continue;
+				done[j] = true;
+				visited[nbVisited++] = j;
+				if (rowByCol[j] == -1) sink = j;
+				else relax(rowByCol[j], dist[j], first, edgeCols, edgeCosts, rowPotentials, colPotentials, dist, previousRow, done, heap);
+			}
+
+			// Update the potentials so that the reduced costs stay non negative and are null on the path.
+			double delta = dist[sink];
+			rowPotentials[s] += delta;
+			for (int v = 0; v < nbVisited; v++) {
+				int j = visited[v];
+				colPotentials[j] -= delta - dist[j];
+				if (rowByCol[j] != -1) rowPotentials[rowByCol[j]] += delta - dist[j];
+			}
+
+			// Augment along the path.
+			for (int j = sink; j != -1; ) {
+				int i = previousRow[j];
+				int previousCol = (i == s) ? -1 : colByRow[i];
+				rowByCol[j] = i;
+				colByRow[i] = j;
+				j = previousCol;
+			}
+
+			for (int v = 0; v < nbVisited; v++) done[visited[v]] = false;
+			for (int j: heap.touched()) dist[j] = Double.POSITIVE_INFINITY;
+		}
+
+		int[] assignment = new int[rows];
+		for (int i = 0; i < rows; i++) assignment[i] = colByRow[i] < cols ? colByRow[i] : -1;
+		return assignment;
+	}
+
+	private static void relax(int i, double d, int[] first, int[] edgeCols, double[] edgeCosts, double[] rowPotentials,
+			double[] colPotentials, double[] dist, int[] previousRow, boolean[] done, Heap heap) {
+		for (int e = first[i]; e < first[i + 1]; e++) {
+			int j = edgeCols[e];
+			if (done[j]) continue;
+			double nd = d + edgeCosts[e] - rowPotentials[i] - colPotentials[j];
+			if (nd < dist[j]) {
+				if (dist[j] == Double.POSITIVE_INFINITY) heap.touch(j);
+				dist[j] = nd;
+				previousRow[j] = i;
+				heap.push(nd, j);
+			}
+		}
+	}
+
+	/**
+	 * Binary heap of columns ordered by distance, where a column can be pushed several times.
+	 * The stale entries are skipped by the caller. The columns pushed are remembered so that
+	 * their distances can be reset.
+	 */
+	private static final class Heap {
+
+		private double[] keys = new double[16];
+
+		private int[] values = new int[16];
+
+		private int size;
+
+		private int[] touched = new int[16];
+
+		private int nbTouched;
+
+		private void clear() {
+			size = 0;
+			nbTouched = 0;
+		}
+
+		private void touch(int value) {
+			if (nbTouched == touched.length) touched = Arrays.copyOf(touched, nbTouched * 2);
+			touched[nbTouched++] = value;
+		}
+
+		private int[] touched() {
+			return Arrays.copyOf(touched, nbTouched);
+		}
+
+		private void push(double key, int value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (keys[parent] <= key) break;
+				keys[i] = keys[parent];
+				values[i] = values[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		private int pop() {
+			int top = values[0];
+			double key = keys[--size];
+			int value = values[size];
+			int i = 0;
+			while (2 * i + 1 < size) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+				if (key <= keys[child]) break;
+				keys[i] = keys[child];
+				values[i] = values[child];
+				i = child;
+			}
+			keys[i] = key;
+			values[i] = value;
+			return top;
+		}
+
+	}
+
+}
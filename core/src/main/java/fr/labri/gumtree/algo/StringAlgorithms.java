@@ -1,7 +1,7 @@
 package fr.labri.gumtree.algo;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import fr.labri.gumtree.tree.Tree;
@@ -10,28 +10,16 @@ public final class StringAlgorithms {
 
     private StringAlgorithms() {};
 
-    public static List<int[]> lcss(String s0, String s1) {
-            int[][] lengths = new int[s0.length() + 1][s1.length() + 1];
-            for (int i = 0; i < s0.length(); i++)
-                    for (int j = 0; j < s1.length(); j++)
-                            if (s0.charAt(i) == (s1.charAt(j)))
-                                    lengths[i+1][j+1] = lengths[i][j] + 1;
-                            else
-                                    lengths[i+1][j+1] = Math.max(lengths[i+1][j], lengths[i][j+1]);
-
-            List<int[]> indexes = new ArrayList<>();
-
-            for (int x = s0.length(), y = s1.length(); x != 0 && y != 0; ) {
-                    if (lengths[x][y] == lengths[x - 1][y]) x--;
-                    else if (lengths[x][y] == lengths[x][y - 1]) y--;
-                    else {
-                            indexes.add(new int[] {x - 1, y - 1});
-                            x--;
-                            y--;
+    /**
+     * Returns the indexes of the characters of a longest common subsequence of the strings.
+     */
+    public static List<int[]> lcss(final String s0, final String s1) {
+            return lcss(new Sequences() {
+                    @Override
+                    public boolean equal(int i, int j) {
+                            return s0.charAt(i) == s1.charAt(j);
                     }
-            }
-            Collections.reverse(indexes);
-            return indexes;
+            }, s0.length(), s1.length());
     }
 
     public static List<int[]> hunks(String s0, String s1) {
@@ -60,51 +48,219 @@ public final class StringAlgorithms {
             return hunks;
     }
 
-    public static String lcs(String S1, String S2) {
-            int Start = 0;
-            int Max = 0;
-            for (int i = 0; i < S1.length(); i++)
-            {
-                    for (int j = 0; j < S2.length(); j++)
-                    {
-                            int x = 0;
-                            while (S1.charAt(i + x) == S2.charAt(j + x))
-                            {
-                                    x++;
-                                    if (((i + x) >= S1.length()) || ((j + x) >= S2.length())) break;
+    /**
+     * Returns a longest common substring of the strings, the one ending first in s1 if there are several.
+     * The substrings of s2 are recognized by a suffix automaton, so that s1 is scanned once, in a time
+     * linear in the lengths of the strings for a bounded alphabet.
+     */
+    public static String lcs(String s1, String s2) {
+            if (s1.isEmpty() || s2.isEmpty()) return "";
+            SuffixAutomaton automaton = new SuffixAutomaton(s2);
+            int state = 0;
+            int length = 0;
+            int max = 0;
+            int end = 0;
+            for (int i = 0; i < s1.length(); i++) {
+                    char c = s1.charAt(i);
+                    int next = automaton.next(state, c);
+                    while (next == -1 && state != 0) {
+                            state = automaton.link[state];
+                            length = automaton.length[state];
+                            next = automaton.next(state, c);
+                    }
+                    if (next == -1) {
+                            length = 0;
+                    } else {
+                            state = next;
+                            length++;
+                    }
+                    if (length > max) {
+                            max = length;
+                            end = i + 1;
+                    }
+            }
+            return s1.substring(end - max, end);
+    }
+
+    /**
+     * Minimal automaton recognizing the substrings of a string. The transitions of a state are kept
+     * in a linked list of edges, stored in parallel arrays.
+     */
+    private static final class SuffixAutomaton {
+
+            private int[] length;
+            private int[] link;
+            private int[] firstEdge;
+            private int states;
+
+            private char[] edgeChar;
+            private int[] edgeTarget;
+            private int[] edgeNext;
+            private int edges;
+
+            private SuffixAutomaton(String s) {
+                    int capacity = 2 * s.length() + 1;
+                    length = new int[capacity];
+                    link = new int[capacity];
+                    firstEdge = new int[capacity];
+                    edgeChar = new char[3 * s.length() + 1];
+                    edgeTarget = new int[edgeChar.length];
+                    edgeNext = new int[edgeChar.length];
+                    int last = newState(0);
+                    link[last] = -1;
+                    for (int i = 0; i < s.length(); i++) {
+                            char c = s.charAt(i);
+                            int cur = newState(length[last] + 1);
+                            int p = last;
+                            while (p != -1 && next(p, c) == -1) {
+                                    addEdge(p, c, cur);
+                                    p = link[p];
                             }
-                            if (x > Max)
-                            {
-                                    Max = x;
-                                    Start = i;
+                            if (p == -1) link[cur] = 0;
+                            else {
+                                    int q = next(p, c);
+                                    if (length[p] + 1 == length[q]) link[cur] = q;
+                                    else {
+                                            int clone = newState(length[p] + 1);
+                                            for (int e = firstEdge[q]; e != -1; e = edgeNext[e]) addEdge(clone, edgeChar[e], edgeTarget[e]);
+                                            link[clone] = link[q];
+                                            while (p != -1 && next(p, c) == q) {
+                                                    edgeTarget[edge(p, c)] = clone;
+                                                    p = link[p];
+                                            }
+                                            link[q] = clone;
+                                            link[cur] = clone;
+                                    }
                             }
+                            last = cur;
+                    }
+            }
+
+            private int next(int state, char c) {
+                    int e = edge(state, c);
+                    return e == -1 ? -1 : edgeTarget[e];
+            }
+
+            private int edge(int state, char c) {
+                    for (int e = firstEdge[state]; e != -1; e = edgeNext[e]) if (edgeChar[e] == c) return e;
+                    return -1;
+            }
+
+            private int newState(int len) {
+                    length[states] = len;
+                    firstEdge[states] = -1;
+                    return states++;
+            }
+
+            private void addEdge(int state, char c, int target) {
+                    if (edges == edgeChar.length) {
+                            edgeChar = Arrays.copyOf(edgeChar, edges * 2);
+                            edgeTarget = Arrays.copyOf(edgeTarget, edges * 2);
+                            edgeNext = Arrays.copyOf(edgeNext, edges * 2);
                     }
+                    edgeChar[edges] = c;
+                    edgeTarget[edges] = target;
+                    edgeNext[edges] = firstEdge[state];
+                    firstEdge[state] = edges++;
             }
-            return S1.substring(Start, (Start + Max));
+
     }
 
-    public static List<int[]> lcss(List<Tree> s0, List<Tree> s1) {
-            int[][] lengths = new int[s0.size() + 1][s1.size() + 1];
-            for (int i = 0; i < s0.size(); i++)
-                    for (int j = 0; j < s1.size(); j++)
-                            if (s0.get(i).isSimilar(s1.get(j)))
-                                    lengths[i+1][j+1] = lengths[i][j] + 1;
-                            else
-                                    lengths[i+1][j+1] = Math.max(lengths[i+1][j], lengths[i][j+1]);
+    /**
+     * Returns the indexes of the trees of a longest common subsequence of similar trees of the lists.
+     */
+    public static List<int[]> lcss(final List<Tree> s0, final List<Tree> s1) {
+            return lcss(new Sequences() {
+                    @Override
+                    public boolean equal(int i, int j) {
+                            return s0.get(i).isSimilar(s1.get(j));
+                    }
+            }, s0.size(), s1.size());
+    }
 
+    /**
+     * Two sequences of elements which can be compared for equality.
+     */
+    private interface Sequences {
+            boolean equal(int i, int j);
+    }
+
+    /**
+     * Computes a longest common subsequence with the linear space variant of the O(ND) difference
+     * algorithm of Myers, D being the size of the shortest edit script. The sequences are recursively
+     * split on the middle snake of their edit graph, as in the algorithm of Hirschberg.
+     */
+    private static List<int[]> lcss(Sequences s, int n, int m) {
             List<int[]> indexes = new ArrayList<>();
+            int size = n + m + 4;
+            lcss(s, 0, n, 0, m, new int[size], new int[size], indexes);
+            return indexes;
+    }
 
-            for (int x = s0.size(), y = s1.size(); x != 0 && y != 0; ) {
-                    if (lengths[x][y] == lengths[x - 1][y]) x--;
-                    else if (lengths[x][y] == lengths[x][y - 1]) y--;
-                    else {
-                            indexes.add(new int[] {x - 1, y - 1});
-                            x--;
-                            y--;
+    private static void lcss(Sequences s, int i0, int n, int j0, int m, int[] vf, int[] vb, List<int[]> indexes) {
+            while (n > 0 && m > 0 && s.equal(i0, j0)) {
+                    indexes.add(new int[] {i0, j0});
+                    i0++;
+                    j0++;
+                    n--;
+                    m--;
+            }
+            int suffix = 0;
+            while (n > 0 && m > 0 && s.equal(i0 + n - 1, j0 + m - 1)) {
+                    n--;
+                    m--;
+                    suffix++;
+            }
+            if (n > 0 && m > 0) {
+                    int[] snake = middleSnake(s, i0, n, j0, m, vf, vb);
+                    lcss(s, i0, snake[0], j0, snake[1], vf, vb, indexes);
+                    for (int x = snake[0], y = snake[1]; x < snake[2]; x++, y++) indexes.add(new int[] {i0 + x, j0 + y});
+                    lcss(s, i0 + snake[2], n - snake[2], j0 + snake[3], m - snake[3], vf, vb, indexes);
+            }
+            for (int k = 0; k < suffix; k++) indexes.add(new int[] {i0 + n + k, j0 + m + k});
+    }
+
+    /**
+     * Returns the start and end points, relative to the given offsets, of the middle snake of an optimal path
+     * in the edit graph of the subsequences. The forward and backward furthest reaching points are stored
+     * by diagonal in vf and vb, the backward points being counted from the ends of the subsequences.
+     */
+    private static int[] middleSnake(Sequences s, int i0, int n, int j0, int m, int[] vf, int[] vb) {
+            int max = (n + m + 1) / 2;
+            int offset = max + 1;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            vf[offset + 1] = 0;
+            vb[offset + 1] = 0;
+            for (int d = 0; d <= max; d++) {
+                    for (int k = -d; k <= d; k += 2) {
+                            int x = (k == -d || (k != d && vf[offset + k - 1] < vf[offset + k + 1])) ? vf[offset + k + 1] : vf[offset + k - 1] + 1;
+                            int y = x - k;
+                            int x0 = x;
+                            int y0 = y;
+                            while (x < n && y < m && s.equal(i0 + x, j0 + y)) {
+                                    x++;
+                                    y++;
+                            }
+                            vf[offset + k] = x;
+                            if (odd && k >= delta - (d - 1) && k <= delta + (d - 1) && x + vb[offset + delta - k] >= n)
+                                    return new int[] {x0, y0, x, y};
+                    }
+                    for (int k = -d; k <= d; k += 2) {
+                            int x = (k == -d || (k != d && vb[offset + k - 1] < vb[offset + k + 1])) ? vb[offset + k + 1] : vb[offset + k - 1] + 1;
+                            int y = x - k;
+                            int x0 = x;
+                            int y0 = y;
+                            while (x < n && y < m && s.equal(i0 + n - 1 - x, j0 + m - 1 - y)) {
+                                    x++;
+                                    y++;
+                            }
+                            vb[offset + k] = x;
+                            if (!odd && k >= delta - d && k <= delta + d && x + vf[offset + delta - k] >= n)
+                                    return new int[] {n - x, m - y, n - x0, m - y0};
                     }
             }
-            Collections.reverse(indexes);
-            return indexes;
+            throw new IllegalStateException("No middle snake found.");
     }
 
 }
@@ -261,10 +261,7 @@ public final class TreeIoUtils {
 				label = label.replaceAll("\"", "").replaceAll("\\s", "").replaceAll("\\\\", "");
 			if (label.length() > 30)
 				label = label.substring(0, 30);
-			b.append(t.getId() + " [label=\"" + label + "\"");
-			if (t.isMatched())
-				b.append(",style=filled,fillcolor=cadetblue1");
-			b.append("];\n");
+			b.append(t.getId() + " [label=\"" + label + "\"];\n");
 		}
 
 		for (Tree t : root.getTrees())
@@ -0,0 +1,58 @@
+package fr.labri.gumtree.matchers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Index of the unmatched inner nodes of a destination tree by type, each type having
+ * its nodes in post-order. The nodes matched after the creation of the index are removed
+ * lazily, when the candidates of their type are requested.
+ */
+public class CandidateIndex {
+
+	private final TIntObjectMap<List<Tree>> candidates = new TIntObjectHashMap<>();
+
+	private final BitSet matched;
+
+	/**
+	 * @param dst the destination tree.
+	 * @param matched the ids of the matched destination trees, which are read each time
+	 * candidates are requested.
+	 */
+	public CandidateIndex(Tree dst, BitSet matched) {
+		this.matched = matched;
+		for (Tree t: TreeUtils.postOrder(dst)) {
+			if (t.isLeaf() || matched.get(t.getId())) continue;
+			List<Tree> trees = candidates.get(t.getType());
+			if (trees == null) {
+				trees = new ArrayList<>();
+				candidates.put(t.getType(), trees);
+			}
+			trees.add(t);
+		}
+	}
+
+	/**
+	 * Returns the unmatched inner nodes having the given type, in post-order.
+	 * The returned list must not be modified.
+	 */
+	public List<Tree> getCandidates(int type) {
+		List<Tree> trees = candidates.get(type);
+		if (trees == null) return Collections.emptyList();
+		int size = 0;
+		for (int i = 0; i < trees.size(); i++) {
+			Tree t = trees.get(i);
+			if (!matched.get(t.getId())) trees.set(size++, t);
+		}
+		if (size != trees.size()) trees.subList(size, trees.size()).clear();
+		return trees;
+	}
+
+}
@@ -21,6 +21,8 @@ public class CompositeMatcher extends Matcher {
 			m.match();
 			long toc = System.currentTimeMillis();
 			perfs[i] = toc - tic;
+			// The next matchers have nothing left to match.
+			if (mappings.size() == src.getSize() && mappings.size() == dst.getSize()) break;
 		}
 		StringBuffer b = new StringBuffer();
 		b.append("Matching performed. Times: ");
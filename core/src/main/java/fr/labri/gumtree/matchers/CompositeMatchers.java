@@ -1,5 +1,6 @@
 package fr.labri.gumtree.matchers;
 
+import fr.labri.gumtree.matchers.heuristic.TrimmingMatcher;
 import fr.labri.gumtree.matchers.heuristic.XyBottomUpMatcher;
 import fr.labri.gumtree.matchers.heuristic.cd.ChangeDistillerBottumUpMatcher;
 import fr.labri.gumtree.matchers.heuristic.cd.ChangeDistillerLeavesMatcher;
@@ -25,6 +26,7 @@ public class CompositeMatchers {
 		@Override
 		public Matcher newMatcher(Tree src, Tree dst) {
 			return new CompositeMatcher(src, dst, new MatcherFactory[] {
+					MatcherFactories.getFactory(TrimmingMatcher.TrimmingMatcherFactory.class),
 					MatcherFactories.getFactory(GreedySubtreeMatcher.GreedySubtreeMatcherFactory.class),
 					MatcherFactories.getFactory(CompleteBottomUpMatcher.CompleteBottumUpMatcherFactory.class)});
 		}
@@ -36,6 +38,7 @@ public class CompositeMatchers {
 		@Override
 		public Matcher newMatcher(Tree src, Tree dst) {
 			return new CompositeMatcher(src, dst, new MatcherFactory[] {
+					MatcherFactories.getFactory(TrimmingMatcher.TrimmingMatcherFactory.class),
 					MatcherFactories.getFactory(GreedySubtreeMatcher.GreedySubtreeMatcherFactory.class),
 					MatcherFactories.getFactory(XyBottomUpMatcher.XyBottomUpMatcherFactory.class)});
 		}
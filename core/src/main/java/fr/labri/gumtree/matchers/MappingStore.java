@@ -1,53 +1,127 @@
 package fr.labri.gumtree.matchers;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import fr.labri.gumtree.tree.Tree;
 
+/**
+ * One to one mappings between source and destination trees. The mappings are stored
+ * in two arrays indexed by the ids of the source and destination trees, which grow
+ * with the largest id. Trees without a valid id (negative ids) are stored in hash maps.
+ */
 public class MappingStore implements Iterable<Mapping> {
+
+	private static final int DEFAULT_CAPACITY = 16;
 	
-	private Map<Tree, Tree> srcs;
+	private Mapping[] srcs;
 	
-	private Map<Tree, Tree> dsts;
+	private Mapping[] dsts;
+
+	private Map<Tree, Mapping> unindexedSrcs;
+
+	private Map<Tree, Mapping> unindexedDsts;
+
+	private int size;
+
+	private int version;
 	
 	public MappingStore(Set<Mapping> mappings) {
-		srcs = new  HashMap<Tree, Tree>();
-		dsts = new HashMap<Tree, Tree>();
+		this(mappings.size());
 		for (Mapping m: mappings) link(m.getFirst(), m.getSecond());
 	}
 	
 	public MappingStore() {
-		srcs = new  HashMap<Tree, Tree>();
-		dsts = new HashMap<Tree, Tree>();
+		this(DEFAULT_CAPACITY);
 	}
 	
 	public MappingStore(int size) {
-		srcs = new  HashMap<Tree, Tree>(size);
-		dsts = new HashMap<Tree, Tree>(size);
+		srcs = new Mapping[Math.max(size, DEFAULT_CAPACITY)];
+		dsts = new Mapping[Math.max(size, DEFAULT_CAPACITY)];
+		unindexedSrcs = new HashMap<Tree, Mapping>();
+		unindexedDsts = new HashMap<Tree, Mapping>();
 	}
 	
 	public Set<Mapping> asSet() {
 		Set<Mapping> mappings = new HashSet<>();
-		for (Tree src : srcs.keySet()) mappings.add(new Mapping(src, srcs.get(src)));
+		for (Mapping m: this) mappings.add(m);
 		return mappings;
 	}
 	
 	public MappingStore copy() {
-		return new MappingStore(asSet());
+		MappingStore copy = new MappingStore(0);
+		copy.srcs = Arrays.copyOf(srcs, srcs.length);
+		copy.dsts = Arrays.copyOf(dsts, dsts.length);
+		copy.unindexedSrcs.putAll(unindexedSrcs);
+		copy.unindexedDsts.putAll(unindexedDsts);
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Returns the number of mapped source trees.
+	 */
+	public int size() {
+		return size;
 	}
 	
 	public void link(Tree src, Tree dst) {
-		srcs.put(src, dst);
-		dsts.put(dst, src);
+		version++;
+		Mapping m = new Mapping(src, dst);
+		int srcId = src.getId();
+		if (srcId >= 0) {
+			if (srcId >= srcs.length) srcs = grow(srcs, srcId);
+			if (srcs[srcId] == null) size++;
+			srcs[srcId] = m;
+		} else if (unindexedSrcs.put(src, m) == null) size++;
+		int dstId = dst.getId();
+		if (dstId >= 0) {
+			if (dstId >= dsts.length) dsts = grow(dsts, dstId);
+			dsts[dstId] = m;
+		} else unindexedDsts.put(dst, m);
 	}
 	
 	public void unlink(Tree src, Tree dst) {
-		srcs.remove(src);
-		dsts.remove(dst);
+		version++;
+		int srcId = src.getId();
+		if (srcId >= 0) {
+			if (srcId < srcs.length && srcs[srcId] != null) {
+				srcs[srcId] = null;
+				size--;
+			}
+		} else if (unindexedSrcs.remove(src) != null) size--;
+		int dstId = dst.getId();
+		if (dstId >= 0) {
+			if (dstId < dsts.length) dsts[dstId] = null;
+		} else unindexedDsts.remove(dst);
+	}
+
+	/**
+	 * Returns a counter incremented on each modification of the store.
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	private static Mapping[] grow(Mapping[] mappings, int id) {
+		return Arrays.copyOf(mappings, Math.max(id + 1, mappings.length * 2));
+	}
+
+	private Mapping getSrcMapping(Tree src) {
+		int id = src.getId();
+		if (id >= 0) return (id < srcs.length) ? srcs[id] : null;
+		else return unindexedSrcs.get(src);
+	}
+
+	private Mapping getDstMapping(Tree dst) {
+		int id = dst.getId();
+		if (id >= 0) return (id < dsts.length) ? dsts[id] : null;
+		else return unindexedDsts.get(dst);
 	}
 	
 	public Tree firstMappedSrcParent(Tree src) {
@@ -75,28 +149,85 @@ public class MappingStore implements Iterable<Mapping> {
 	}
 	
 	public Tree getDst(Tree src) {
-		return srcs.get(src);
+		Mapping m = getSrcMapping(src);
+		return (m == null) ? null : m.getSecond();
 	}
 	
 	public Tree getSrc(Tree dst) {
-		return dsts.get(dst);
+		Mapping m = getDstMapping(dst);
+		return (m == null) ? null : m.getFirst();
 	}
 	
 	public boolean hasSrc(Tree src) {
-		return srcs.containsKey(src);
+		return getSrcMapping(src) != null;
 	}
 	
 	public boolean hasDst(Tree dst) {
-		return dsts.containsKey(dst);
+		return getDstMapping(dst) != null;
 	}
 	
 	public boolean has(Tree src, Tree dst) {
-		return srcs.get(src) == dst;
+		return getDst(src) == dst;
 	}
 
+	/**
+	 * Returns an iterator on the stored mappings, ordered by the ids of their source trees.
+	 * No mapping is created during the iteration.
+	 */
 	@Override
 	public Iterator<Mapping> iterator() {
-		return asSet().iterator();
+		return new MappingIterator();
+	}
+
+	private class MappingIterator implements Iterator<Mapping> {
+
+		private int next = -1;
+
+		private Iterator<Mapping> unindexed;
+
+		private Mapping current;
+
+		private MappingIterator() {
+			advance();
+		}
+
+		private void advance() {
+			next++;
+			while (next < srcs.length && srcs[next] == null) next++;
+			if (next == srcs.length && unindexed == null && !unindexedSrcs.isEmpty())
+				unindexed = unindexedSrcs.values().iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < srcs.length || (unindexed != null && unindexed.hasNext());
+		}
+
+		@Override
+		public Mapping next() {
+			if (next < srcs.length) {
+				current = srcs[next];
+				advance();
+			} else if (unindexed != null && unindexed.hasNext()) {
+				current = unindexed.next();
+			} else throw new NoSuchElementException();
+			return current;
+		}
+
+		@Override
+		public void remove() {
+			if (current == null) throw new IllegalStateException();
+			if (current.getFirst().getId() < 0) unindexed.remove();
+			else srcs[current.getFirst().getId()] = null;
+			size--;
+			version++;
+			int dstId = current.getSecond().getId();
+			if (dstId >= 0) {
+				if (dstId < dsts.length) dsts[dstId] = null;
+			} else unindexedDsts.remove(current.getSecond());
+			current = null;
+		}
+
 	}
 
 }
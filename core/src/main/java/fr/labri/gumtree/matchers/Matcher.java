@@ -1,12 +1,21 @@
 package fr.labri.gumtree.matchers;
 
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
 
+/**
+ * Base class of the matchers. The matched state of the nodes is kept by the matcher
+ * in two bit sets indexed by the ids of the nodes, therefore the nodes of the source
+ * and destination trees must have non negative ids, for instance given by
+ * {@link TreeUtils#postOrderNumbering(Tree)}. A tree having a node without id ({@link Tree#NO_ID})
+ * or with a negative id is rejected with an {@link IllegalArgumentException} when it is given
+ * to the matcher.
+ */
 public abstract class Matcher {
 	
 	public final static Logger LOGGER = Logger.getLogger("fr.labri.gumtree.matchers");
@@ -16,11 +25,21 @@ public abstract class Matcher {
 	protected Tree dst;
 
 	protected MappingStore mappings;
+
+	protected BitSet srcMatched;
+
+	protected BitSet dstMatched;
+
+	private SimilarityEngine similarities;
 	
 	public Matcher(Tree src, Tree dst) {
+		checkNumbered(src);
+		checkNumbered(dst);
 		this.src = src;
 		this.dst = dst;
 		this.mappings = new MappingStore();
+		this.srcMatched = new BitSet();
+		this.dstMatched = new BitSet();
 	}
 	
 	public abstract void match();
@@ -29,8 +48,15 @@ public abstract class Matcher {
 		return mappings;
 	}
 	
+	/**
+	 * Set the mappings used by the matcher. The matched state of the nodes
+	 * is reset to the content of the given mappings.
+	 * @param mappings
+	 */
 	public void setMappings(MappingStore mappings) {
 		this.mappings = mappings;
+		this.similarities = null;
+		clean();
 	}
 	
 	public Set<Mapping> getMappingSet() {
@@ -42,6 +68,7 @@ public abstract class Matcher {
 	}
 
 	public void setSrc(Tree src) {
+		checkNumbered(src);
 		this.src = src;
 	}
 
@@ -50,12 +77,14 @@ public abstract class Matcher {
 	}
 
 	public void setDst(Tree dst) {
+		checkNumbered(dst);
 		this.dst = dst;
+		this.similarities = null;
 	}
 	
 	protected void addMapping(Tree src, Tree dst) {
-		src.setMatched(true);
-		dst.setMatched(true);
+		srcMatched.set(src.getId());
+		dstMatched.set(dst.getId());
 		mappings.link(src, dst);
 	}
 	
@@ -70,36 +99,75 @@ public abstract class Matcher {
 	}
 	
 	protected double chawatheSimilarity(Tree src, Tree dst) {
-		int max = Math.max(src.getDescendants().size(), dst.getDescendants().size());
-		return (double) numberOfCommonDescendants(src, dst) / (double) max;
+		return getSimilarityEngine().chawatheSimilarity(src, dst);
 	}
 	
 	protected double diceSimilarity(Tree src, Tree dst) {
-		double c = (double) numberOfCommonDescendants(src, dst);
-		return (2D * c) / ((double) src.getDescendants().size() + (double) dst.getDescendants().size());
+		return getSimilarityEngine().diceSimilarity(src, dst);
 	}
 	
 	protected double jaccardSimilarity(Tree src, Tree dst) {
-		double num = (double) numberOfCommonDescendants(src, dst);
-		double den = (double) src.getDescendants().size() + (double) dst.getDescendants().size() - num;
-		return num/den;
+		return getSimilarityEngine().jaccardSimilarity(src, dst);
 	}
 	
 	protected int numberOfCommonDescendants(Tree src, Tree dst) {
-		Set<Tree> dstDescs = new HashSet<Tree>(dst.getDescendants());
-		int common = 0;
-		
-		for (Tree t: src.getDescendants()) {
-			Tree m = mappings.getDst(t);
-			if (m != null && dstDescs.contains(m)) common++;
-		}
+		return getSimilarityEngine().numberOfCommonDescendants(src, dst);
+	}
 
-		return common;
+	private SimilarityEngine getSimilarityEngine() {
+		if (similarities == null) similarities = new SimilarityEngine(this.dst, mappings);
+		return similarities;
 	}
 	
+	protected boolean isSrcMatched(Tree src) {
+		return srcMatched.get(src.getId());
+	}
+
+	protected boolean isDstMatched(Tree dst) {
+		return dstMatched.get(dst.getId());
+	}
+
+	/**
+	 * Indicate whether or not the source tree is mappable to the destination tree.
+	 * @return true if both trees are not matched and if the trees have the same type, false either.
+	 */
+	protected boolean isMatchable(Tree src, Tree dst) {
+		return src.isCompatible(dst) && !(isSrcMatched(src) || isDstMatched(dst));
+	}
+
+	/**
+	 * Indicate whether or not all the descendants of the source tree are already matched.
+	 */
+	protected boolean areSrcDescendantsMatched(Tree src) {
+		return TreeUtils.areDescendantsMatched(src, srcMatched);
+	}
+
+	/**
+	 * Indicate whether or not all the descendants of the destination tree are already matched.
+	 */
+	protected boolean areDstDescendantsMatched(Tree dst) {
+		return TreeUtils.areDescendantsMatched(dst, dstMatched);
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if a node of the tree has no valid id. The nodes are
+	 * browsed with the pre-order index of the tree, so that nothing is allocated.
+	 */
+	private static void checkNumbered(Tree tree) {
+		int size = tree.getSize();
+		for (int i = 0; i < size; i++)
+			if (tree.getPreOrderTree(i).getId() < 0)
+				throw new IllegalArgumentException("The nodes of the trees must have non negative ids, see TreeUtils.postOrderNumbering.");
+	}
+
+	/**
+	 * Reset the matched state of the nodes to the content of the mappings.
+	 */
 	protected void clean() {
-		for (Tree t: src.getTrees()) if (!mappings.hasSrc(t)) t.setMatched(false);
-		for (Tree t: dst.getTrees()) if (!mappings.hasDst(t)) t.setMatched(false);
+		srcMatched.clear();
+		dstMatched.clear();
+		for (Tree t: src.getTrees()) if (mappings.hasSrc(t)) srcMatched.set(t.getId());
+		for (Tree t: dst.getTrees()) if (mappings.hasDst(t)) dstMatched.set(t.getId());
 	}
 
 }
@@ -0,0 +1,105 @@
+package fr.labri.gumtree.matchers;
+
+import fr.labri.gumtree.matchers.heuristic.LcsMatcher;
+import fr.labri.gumtree.matchers.optimal.rted.RtedAlgorithm;
+import fr.labri.gumtree.matchers.optimal.rted.RtedMatcher;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+/**
+ * Choose the matcher used by the bottom-up matchers to recover the mappings of two subtrees.
+ * No matcher is returned when the smaller or the larger subtree reaches its size limit. Otherwise
+ * the costs of RTED and of a longest common subsequence of the nodes are estimated from the sizes
+ * and shapes of the subtrees. RTED is chosen if it is within the budget, otherwise the longest
+ * common subsequence if it is within the budget. No matcher is returned when none is.
+ *
+ * The Zhang and Shasha algorithm is not considered: it computes at least as many subproblems as
+ * RTED, each of them with a q-gram similarity, therefore it is never cheaper.
+ */
+public class RecoveryMatcherFactory implements MatcherFactory {
+
+	private final int maxSmallerSize;
+
+	private final int maxLargerSize;
+
+	private final long maxCost;
+
+	private final long maxMemory;
+
+	/**
+	 * Returns a factory recovering with RTED the subtrees whose smaller one has less than
+	 * maxSmallerSize nodes and whose larger one has less than maxLargerSize nodes, without budget.
+	 */
+	public static RecoveryMatcherFactory withSizeLimits(int maxSmallerSize, int maxLargerSize) {
+		return new RecoveryMatcherFactory(maxSmallerSize, maxLargerSize, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a factory without size limits, whose recoveries take at most maxCost elementary steps
+	 * and allocate at most maxMemory bytes.
+	 */
+	public static RecoveryMatcherFactory withBudget(long maxCost, long maxMemory) {
+		return new RecoveryMatcherFactory(Integer.MAX_VALUE, Integer.MAX_VALUE, maxCost, maxMemory);
+	}
+
+	public RecoveryMatcherFactory(int maxSmallerSize, int maxLargerSize, long maxCost, long maxMemory) {
+		this.maxSmallerSize = maxSmallerSize;
+		this.maxLargerSize = maxLargerSize;
+		this.maxCost = maxCost;
+		this.maxMemory = maxMemory;
+	}
+
+	/**
+	 * Returns the matcher to use on the given subtrees, or null if no matcher fits the limits.
+	 */
+	@Override
+	public Matcher newMatcher(Tree src, Tree dst) {
+		int smaller = Math.min(src.getSize(), dst.getSize());
+		int larger = Math.max(src.getSize(), dst.getSize());
+		if (smaller >= maxSmallerSize || larger >= maxLargerSize) return null;
+
+		long cells = (long) src.getSize() * (long) dst.getSize();
+		long[] srcKeyRoots = keyRootSizes(src);
+		long[] dstKeyRoots = keyRootSizes(dst);
+		// RTED never computes more subproblems than the left or right decompositions.
+		long rtedCost = cells + Math.min(srcKeyRoots[0] * dstKeyRoots[0], srcKeyRoots[1] * dstKeyRoots[1]);
+		if (rtedCost <= maxCost && RtedAlgorithm.estimateMemory(src, dst) <= maxMemory) return new RtedMatcher(src, dst);
+		else if (cells <= maxCost && 4L * cells <= maxMemory) return new LcsMatcher(src, dst);
+		else return null;
+	}
+
+	public int getMaxSmallerSize() {
+		return maxSmallerSize;
+	}
+
+	public int getMaxLargerSize() {
+		return maxLargerSize;
+	}
+
+	public long getMaxCost() {
+		return maxCost;
+	}
+
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	/**
+	 * Returns the sums of the sizes of the left and right key roots of the tree, the root and the
+	 * nodes having a left sibling, respectively a right sibling.
+	 */
+	private static long[] keyRootSizes(Tree root) {
+		long left = root.getSize();
+		long right = root.getSize();
+		for (Tree t: TreeUtils.preOrder(root)) {
+			int nb = t.getChildren().size();
+			for (int i = 0; i < nb; i++) {
+				int size = t.getChildren().get(i).getSize();
+				if (i > 0) left += size;
+				if (i < nb - 1) right += size;
+			}
+		}
+		return new long[] { left, right };
+	}
+
+}
@@ -0,0 +1,112 @@
+package fr.labri.gumtree.matchers;
+
+import java.util.Arrays;
+
+import fr.labri.gumtree.tree.Tree;
+
+/**
+ * Count the mapped descendants two trees have in common. For a source tree, the pre-order
+ * indexes of the destination trees mapped to its descendants are collected once in a sorted array,
+ * then the count for a destination candidate is the number of indexes falling in the pre-order
+ * interval of the candidate, found by two binary searches. The array is cached for the last source
+ * tree and rebuilt only when the source tree or the mappings change, which is the common case
+ * when a bottom-up matcher scores all the candidates of a source tree.
+ */
+public class SimilarityEngine {
+
+	private final Tree dst;
+
+	private final MappingStore mappings;
+
+	private Tree cachedSrc;
+
+	private int cachedVersion;
+
+	private int[] images = new int[16];
+
+	private int imagesSize;
+
+	private boolean indexed;
+
+	/**
+	 * @param dst the destination tree containing all the mapped destination trees.
+	 * @param mappings the mappings between the trees.
+	 */
+	public SimilarityEngine(Tree dst, MappingStore mappings) {
+		this.dst = dst;
+		this.mappings = mappings;
+	}
+
+	/**
+	 * Returns the number of descendants of the source tree mapped to a descendant of the destination tree.
+	 */
+	public int numberOfCommonDescendants(Tree src, Tree dst) {
+		if (src != cachedSrc || mappings.getVersion() != cachedVersion) collectImages(src);
+		if (indexed && isIndexed(dst)) {
+			int from = dst.getPreOrderIndex() + 1;
+			int to = dst.getPreOrderIndex() + dst.getSize();
+			return lowerBound(to) - lowerBound(from);
+		}
+
+		int common = 0;
+		for (int i = 1; i < src.getSize(); i++) {
+			Tree m = mappings.getDst(src.getPreOrderTree(i));
+			if (m != null && m.isDescendantOf(dst)) common++;
+		}
+		return common;
+	}
+
+	public double chawatheSimilarity(Tree src, Tree dst) {
+		int max = Math.max(src.getSize() - 1, dst.getSize() - 1);
+		return (double) numberOfCommonDescendants(src, dst) / (double) max;
+	}
+
+	public double diceSimilarity(Tree src, Tree dst) {
+		double c = (double) numberOfCommonDescendants(src, dst);
+		return (2D * c) / ((double) (src.getSize() - 1) + (double) (dst.getSize() - 1));
+	}
+
+	public double jaccardSimilarity(Tree src, Tree dst) {
+		double num = (double) numberOfCommonDescendants(src, dst);
+		double den = (double) (src.getSize() - 1) + (double) (dst.getSize() - 1) - num;
+		return num / den;
+	}
+
+	private void collectImages(Tree src) {
+		cachedSrc = src;
+		cachedVersion = mappings.getVersion();
+		imagesSize = 0;
+		indexed = true;
+		for (int i = 1; i < src.getSize(); i++) {
+			Tree m = mappings.getDst(src.getPreOrderTree(i));
+			if (m == null) continue;
+			if (!isIndexed(m)) {
+				indexed = false;
+				return;
+			}
+			if (imagesSize == images.length) images = Arrays.copyOf(images, imagesSize * 2);
+			images[imagesSize++] = m.getPreOrderIndex();
+		}
+		Arrays.sort(images, 0, imagesSize);
+	}
+
+	/**
+	 * Indicate whether or not the given tree belongs to the pre-order index of the destination tree.
+	 */
+	private boolean isIndexed(Tree t) {
+		int i = t.getPreOrderIndex() - dst.getPreOrderIndex();
+		return i >= 0 && i < dst.getSize() && dst.getPreOrderTree(i) == t;
+	}
+
+	private int lowerBound(int index) {
+		int low = 0;
+		int high = imagesSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (images[mid] < index) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+}
@@ -18,7 +18,6 @@ public class LcsMatcher extends Matcher {
 		List<Tree> srcSeq = TreeUtils.preOrder(src);
 		List<Tree> dstSeq = TreeUtils.preOrder(dst);
 		List<int[]> lcs = StringAlgorithms.lcss(srcSeq, dstSeq);
-		System.out.println(lcs.size());
 		for (int[] x: lcs) {
 
 			Tree t1 = srcSeq.get(x[0]);
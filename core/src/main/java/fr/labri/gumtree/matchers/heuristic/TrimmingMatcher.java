@@ -0,0 +1,100 @@
+package fr.labri.gumtree.matchers.heuristic;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.MatcherFactory;
+import fr.labri.gumtree.tree.Tree;
+
+/**
+ * Match the identical parts of the trees before the other matchers, as done by text diffs which
+ * trim the common prefix and suffix of the files. Identical roots are fully mapped. Otherwise the
+ * leading and trailing children of the roots which are clones are fully mapped, and the remaining
+ * children are trimmed the same way when they are pairwise similar. Only the changed middle of
+ * the trees is left unmatched for the next matchers.
+ * <p>
+ * Only the clones which are not leaves and whose digest is unique in both trees are mapped. The
+ * subtree matchers map such clones anyway, so trimming them first does not change the final mappings.
+ */
+public class TrimmingMatcher extends Matcher {
+
+	private Map<Long, Integer> srcDigests;
+
+	private Map<Long, Integer> dstDigests;
+
+	public TrimmingMatcher(Tree src, Tree dst) {
+		super(src, dst);
+	}
+
+	@Override
+	public void match() {
+		srcDigests = countDigests(src);
+		dstDigests = countDigests(dst);
+		Deque<Tree[]> pairs = new ArrayDeque<>();
+		pairs.push(new Tree[] { src, dst });
+		while (!pairs.isEmpty()) {
+			Tree[] pair = pairs.pop();
+			Tree src = pair[0];
+			Tree dst = pair[1];
+			if (isSrcMatched(src) || isDstMatched(dst) || trim(src, dst)) continue;
+
+			List<Tree> srcChildren = src.getChildren();
+			List<Tree> dstChildren = dst.getChildren();
+			int start = 0;
+			int srcEnd = srcChildren.size();
+			int dstEnd = dstChildren.size();
+			while (start < srcEnd && start < dstEnd && trim(srcChildren.get(start), dstChildren.get(start))) start++;
+			while (start < srcEnd && start < dstEnd && trim(srcChildren.get(srcEnd - 1), dstChildren.get(dstEnd - 1))) {
+				srcEnd--;
+				dstEnd--;
+			}
+
+			// The changed children are trimmed only when they can be paired by position.
+			if (srcEnd != dstEnd) continue;
+			for (int i = start; i < srcEnd; i++) {
+				Tree srcChild = srcChildren.get(i);
+				Tree dstChild = dstChildren.get(i);
+				if (!srcChild.isLeaf() && !dstChild.isLeaf() && srcChild.isSimilar(dstChild))
+					pairs.push(new Tree[] { srcChild, dstChild });
+			}
+		}
+		srcDigests = null;
+		dstDigests = null;
+	}
+
+	/**
+	 * Fully map the given trees if they are unmatched clones which are not leaves, and no other
+	 * tree of the source or of the destination has their digest. The subtree matchers do not map
+	 * the leaves on their own either.
+	 * @return true if the trees have been mapped, false either.
+	 */
+	private boolean trim(Tree src, Tree dst) {
+		if (src.isLeaf() || isSrcMatched(src) || isDstMatched(dst) || !src.isClone(dst)) return false;
+		if (srcDigests.get(src.getDigest()) != 1 || dstDigests.get(dst.getDigest()) != 1) return false;
+		addFullMapping(src, dst);
+		return true;
+	}
+
+	private static Map<Long, Integer> countDigests(Tree root) {
+		Map<Long, Integer> counts = new HashMap<>();
+		for (Tree t: root.getTrees()) {
+			Integer count = counts.get(t.getDigest());
+			counts.put(t.getDigest(), count == null ? 1 : count + 1);
+		}
+		return counts;
+	}
+
+	public static class TrimmingMatcherFactory implements MatcherFactory {
+
+		@Override
+		public Matcher newMatcher(Tree src, Tree dst) {
+			return new TrimmingMatcher(src, dst);
+		}
+
+	}
+
+}
@@ -41,7 +41,7 @@ public class XyBottomUpMatcher extends Matcher {
 			if (src.isRoot()) {
 				addMapping(src, this.dst);
 				lastChanceMatch(src, this.dst);
-			} else if (!(src.isMatched() || src.isLeaf())) {
+			} else if (!(isSrcMatched(src) || src.isLeaf())) {
 				Set<Tree> candidates = getDstCandidates(src);
 				Tree best = null;
 				double max = -1D;
@@ -65,8 +65,8 @@ public class XyBottomUpMatcher extends Matcher {
 
 	private Set<Tree> getDstCandidates(Tree src) {
 		Set<Tree> seeds = new HashSet<>();
-		for (Tree c: src.getDescendants()) {
-			Tree m = mappings.getDst(c);
+		for (int i = 1; i < src.getSize(); i++) {
+			Tree m = mappings.getDst(src.getPreOrderTree(i));
 			if (m != null) seeds.add(m);
 		}
 		Set<Tree> candidates = new HashSet<>();
@@ -76,7 +76,7 @@ public class XyBottomUpMatcher extends Matcher {
 				Tree parent = seed.getParent();
 				if (visited.contains(parent)) break;
 				visited.add(parent);
-				if (parent.getType() == src.getType() && !parent.isMatched()) candidates.add(parent);
+				if (parent.getType() == src.getType() && !isDstMatched(parent)) candidates.add(parent);
 				seed = parent;
 			}
 		}
@@ -2,6 +2,7 @@ package fr.labri.gumtree.matchers.heuristic.cd;
 
 import java.util.List;
 
+import fr.labri.gumtree.matchers.CandidateIndex;
 import fr.labri.gumtree.matchers.Matcher;
 import fr.labri.gumtree.matchers.MatcherFactory;
 import fr.labri.gumtree.tree.Tree;
@@ -20,25 +21,31 @@ public class ChangeDistillerBottumUpMatcher extends Matcher {
 	@Override
 	public void match() {
 		List<Tree> poSrc = TreeUtils.postOrder(src);
-		List<Tree> poDst = TreeUtils.postOrder(dst);
-		for (Tree src: poSrc) {
-			int l = numberOfLeafs(src);
-			for (Tree dst: poDst) {
-				if (src.isMatchable(dst) && !(src.isLeaf() || dst.isLeaf())) {
-					double sim = chawatheSimilarity(src, dst);
-					if ((l > 4 && sim >= STRUCT_SIM_THRESHOLD_1) || (l <= 4 && sim >= STRUCT_SIM_THRESHOLD_2)) {
-						addMapping(src, dst);
-						break;
-					}
+		CandidateIndex dsts = new CandidateIndex(dst, dstMatched);
+		int[] leafs = countLeafs(poSrc);
+		for (int i = 0; i < poSrc.size(); i++) {
+			Tree src = poSrc.get(i);
+			if (src.isLeaf() || isSrcMatched(src)) continue;
+			// The descendants of a node are the nodes just before it in post-order.
+			int l = leafs[i] - leafs[i - src.getSize() + 1];
+			for (Tree dst: dsts.getCandidates(src.getType())) {
+				double sim = chawatheSimilarity(src, dst);
+				if ((l > 4 && sim >= STRUCT_SIM_THRESHOLD_1) || (l <= 4 && sim >= STRUCT_SIM_THRESHOLD_2)) {
+					addMapping(src, dst);
+					break;
 				}
 			}
 		}
 	}
 	
-	private int numberOfLeafs(Tree root) {
-		int l = 0;
-		for (Tree t : root.getDescendants()) if (t.isLeaf()) l++;
-		return l;
+	/**
+	 * Returns the number of leafs among the first i nodes of the given post-order, for each i.
+	 * The number of leafs of the descendants of a node is then a difference of two values.
+	 */
+	private static int[] countLeafs(List<Tree> postOrder) {
+		int[] leafs = new int[postOrder.size() + 1];
+		for (int i = 0; i < postOrder.size(); i++) leafs[i + 1] = leafs[i] + (postOrder.get(i).isLeaf() ? 1 : 0);
+		return leafs;
 	}
 	
 	public static class ChangeDistillerBottomUpMatcherFactory implements MatcherFactory {
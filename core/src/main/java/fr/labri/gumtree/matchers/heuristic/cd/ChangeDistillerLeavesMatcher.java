@@ -1,15 +1,13 @@
 package fr.labri.gumtree.matchers.heuristic.cd;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
-import uk.ac.shef.wit.simmetrics.similaritymetrics.QGramsDistance;
-import fr.labri.gumtree.matchers.Mapping;
+import fr.labri.gumtree.algo.QGrams;
 import fr.labri.gumtree.matchers.Matcher;
 import fr.labri.gumtree.matchers.MatcherFactory;
 import fr.labri.gumtree.tree.Tree;
@@ -19,37 +17,79 @@ public class ChangeDistillerLeavesMatcher extends Matcher {
 
 	public static final double LABEL_SIM_THRESHOLD = 0.5D;
 
-	private static final QGramsDistance QGRAM = new QGramsDistance();
-
 	public ChangeDistillerLeavesMatcher(Tree src, Tree dst) {
 		super(src, dst);
 	}
 
+	/**
+	 * Match the leaves having a q-gram similarity of their labels above the threshold.
+	 * The q-grams of each leaf are counted once, and the destination leaves are found through
+	 * an inverted index from q-grams to leaves, so that only the pairs sharing q-grams are scored.
+	 * The candidate pairs are sorted by increasing similarity, then by creation order.
+	 */
 	@Override
 	public void match() {
 		List<Tree> srcLeaves = retainLeaves(TreeUtils.postOrder(src));
 		List<Tree> dstLeaves = retainLeaves(TreeUtils.postOrder(dst));
 
-		List<Mapping> leafMappings = new LinkedList<Mapping>();
-
-		for (Tree srcLeaf: srcLeaves) {
-			for (Tree dstLeaf: dstLeaves) {
-				if (srcLeaf.isMatchable(dstLeaf)) {
-					double sim = QGRAM.getSimilarity(srcLeaf.getLabel(), dstLeaf.getLabel());
-					if (sim > LABEL_SIM_THRESHOLD) leafMappings.add(new Mapping(srcLeaf, dstLeaf));
+		Map<Long, Integer> dictionary = new HashMap<>();
+		Profile[] srcProfiles = new Profile[srcLeaves.size()];
+		for (int i = 0; i < srcProfiles.length; i++) srcProfiles[i] = new Profile(srcLeaves.get(i).getLabel(), dictionary);
+		Profile[] dstProfiles = new Profile[dstLeaves.size()];
+		for (int i = 0; i < dstProfiles.length; i++) dstProfiles[i] = new Profile(dstLeaves.get(i).getLabel(), dictionary);
+
+		int[][] postings = invertedIndex(dstProfiles, dictionary.size());
+
+		int[] pairSrcs = new int[16];
+		int[] pairDsts = new int[16];
+		long[] keys = new long[16];
+		int pairs = 0;
+
+		int[] common = new int[dstProfiles.length];
+		int[] touched = new int[dstProfiles.length];
+		for (int i = 0; i < srcProfiles.length; i++) {
+			Profile p = srcProfiles[i];
+			int nbTouched = 0;
+			for (int g = 0; g < p.grams.length; g++) {
+				int[] posting = postings[p.grams[g]];
+				for (int k = 0; k < posting.length; k += 2) {
+					int j = posting[k];
+					if (common[j] == 0) touched[nbTouched++] = j;
+					common[j] += Math.min(p.counts[g], posting[k + 1]);
+				}
+			}
+			Arrays.sort(touched, 0, nbTouched);
+			Tree srcLeaf = srcLeaves.get(i);
+			for (int t = 0; t < nbTouched; t++) {
+				int j = touched[t];
+				float sim = QGrams.similarity(common[j], p.size, dstProfiles[j].size);
+				common[j] = 0;
+				if (sim > LABEL_SIM_THRESHOLD && isMatchable(srcLeaf, dstLeaves.get(j))) {
+					if (pairs == keys.length) {
+						pairSrcs = Arrays.copyOf(pairSrcs, pairs * 2);
+						pairDsts = Arrays.copyOf(pairDsts, pairs * 2);
+						keys = Arrays.copyOf(keys, pairs * 2);
+					}
+					pairSrcs[pairs] = i;
+					pairDsts[pairs] = j;
+					// Non negative floats have the same order as their bits.
+					keys[pairs] = ((long) Float.floatToIntBits(sim) << 32) | pairs;
+					pairs++;
 				}
 			}
 		}
 
-		Set<Tree> srcIgnored = new HashSet<>();
-		Set<Tree> dstIgnored = new HashSet<>();
-		Collections.sort(leafMappings, new LeafMappingComparator());
-		while (leafMappings.size() > 0) {
-			Mapping best = leafMappings.remove(0);
-			if (!(srcIgnored.contains(best.getFirst()) || dstIgnored.contains(best.getSecond()))) {
-				addMapping(best.getFirst(),best.getSecond());
-				srcIgnored.add(best.getFirst());
-				dstIgnored.add(best.getSecond());
+		Arrays.sort(keys, 0, pairs);
+		BitSet srcIgnored = new BitSet(srcProfiles.length);
+		BitSet dstIgnored = new BitSet(dstProfiles.length);
+		for (int k = 0; k < pairs; k++) {
+			int pair = (int) keys[k];
+			int i = pairSrcs[pair];
+			int j = pairDsts[pair];
+			if (!(srcIgnored.get(i) || dstIgnored.get(j))) {
+				addMapping(srcLeaves.get(i), dstLeaves.get(j));
+				srcIgnored.set(i);
+				dstIgnored.set(j);
 			}
 		}
 	}
@@ -63,19 +103,61 @@ public class ChangeDistillerLeavesMatcher extends Matcher {
 		return trees;
 	}
 
-	private class LeafMappingComparator implements Comparator<Mapping> {
-
-		@Override
-		public int compare(Mapping m1, Mapping m2) {
-			return Double.compare(sim(m1), sim(m2));
+	/**
+	 * Returns, for each q-gram, the destination leaves containing it and the number
+	 * of occurrences, as consecutive pairs of integers sorted by leaf.
+	 */
+	private static int[][] invertedIndex(Profile[] profiles, int nbGrams) {
+		int[] sizes = new int[nbGrams];
+		for (Profile p: profiles) for (int g: p.grams) sizes[g] += 2;
+		int[][] postings = new int[nbGrams][];
+		for (int g = 0; g < nbGrams; g++) postings[g] = new int[sizes[g]];
+		Arrays.fill(sizes, 0);
+		for (int j = 0; j < profiles.length; j++) {
+			Profile p = profiles[j];
+			for (int g = 0; g < p.grams.length; g++) {
+				int gram = p.grams[g];
+				postings[gram][sizes[gram]++] = j;
+				postings[gram][sizes[gram]++] = p.counts[g];
+			}
 		}
+		return postings;
+	}
 
-		public double sim(Mapping m) {
-			return QGRAM.getSimilarity(m.getFirst().getLabel(), m.getSecond().getLabel());
+	/**
+	 * Distinct q-grams of a padded label, with their number of occurrences.
+	 */
+	private static final class Profile {
+
+		final int[] grams;
+
+		final int[] counts;
+
+		final int size;
+
+		Profile(String label, Map<Long, Integer> dictionary) {
+			long[] profile = QGrams.profile(label);
+			size = profile.length;
+			int distinct = 0;
+			for (int i = 0; i < size; i++) if (i == 0 || profile[i] != profile[i - 1]) distinct++;
+			grams = new int[distinct];
+			counts = new int[distinct];
+			int g = -1;
+			for (int i = 0; i < size; i++) {
+				if (i == 0 || profile[i] != profile[i - 1]) {
+					Integer id = dictionary.get(profile[i]);
+					if (id == null) {
+						id = dictionary.size();
+						dictionary.put(profile[i], id);
+					}
+					grams[++g] = id;
+				}
+				counts[g]++;
+			}
 		}
 
 	}
-	
+
 	public static class ChangeDistillerLeavesMatcherFactory implements MatcherFactory {
 
 		@Override
@@ -8,7 +8,7 @@ import java.util.Set;
 import fr.labri.gumtree.matchers.Mapping;
 import fr.labri.gumtree.matchers.Matcher;
 import fr.labri.gumtree.matchers.MatcherFactory;
-import fr.labri.gumtree.matchers.optimal.rted.RtedMatcher;
+import fr.labri.gumtree.matchers.RecoveryMatcherFactory;
 import fr.labri.gumtree.tree.Tree;
 import fr.labri.gumtree.tree.TreeMap;
 import fr.labri.gumtree.tree.TreeUtils;
@@ -17,22 +17,37 @@ import fr.labri.gumtree.tree.TreeUtils;
  * Match the nodes using a bottom-up approach. It browse the nodes of the source and destination trees
  * using a post-order traversal, testing if the two selected trees might be mapped. The two trees are mapped 
  * if they are mappable and have a dice coefficient greater than SIM_THRESHOLD. Whenever two trees are mapped
- * a exact ZS algorithm is applied to look to possibly forgotten nodes.
+ * a recovery matcher is applied to look to possibly forgotten nodes. By default it is RTED, when one of the
+ * trees has less than SIZE_THESHOLD nodes.
  */
 public class CompleteBottomUpMatcher extends Matcher {
 
 	private static final double SIM_THRESHOLD = 0.50D;
 	
 	private static final int SIZE_THESHOLD = 100;
-
+	
 	private TreeMap srcIds;
 	
 	private TreeMap dstIds;
 
+	private MatcherFactory recovery = RecoveryMatcherFactory.withSizeLimits(SIZE_THESHOLD, Integer.MAX_VALUE);
+
 	public CompleteBottomUpMatcher(Tree src, Tree dst) {
 		super(src, dst);
 	}
 
+	public MatcherFactory getRecoveryMatcherFactory() {
+		return recovery;
+	}
+
+	/**
+	 * Set the factory of the matchers used to recover the mappings of the descendants of two mapped trees.
+	 * The factory may return null to skip the recovery.
+	 */
+	public void setRecoveryMatcherFactory(MatcherFactory recovery) {
+		this.recovery = recovery;
+	}
+
 	public void match() {
 		srcIds = new TreeMap(src);
 		dstIds = new TreeMap(dst);
@@ -42,7 +57,7 @@ public class CompleteBottomUpMatcher extends Matcher {
 				addMapping(t, this.dst);
 				lastChanceMatch(t, this.dst);
 				break;
-			} else if (!(t.isMatched() || t.isLeaf())) {
+			} else if (!(isSrcMatched(t) || t.isLeaf())) {
 				List<Tree> candidates = getDstCandidates(t);
 				Tree best = null;
 				double max = -1D;
@@ -66,8 +81,8 @@ public class CompleteBottomUpMatcher extends Matcher {
 
 	private List<Tree> getDstCandidates(Tree src) {
 		List<Tree> seeds = new ArrayList<>();
-		for (Tree c: src.getDescendants()) {
-			Tree m = mappings.getDst(c);
+		for (int i = 1; i < src.getSize(); i++) {
+			Tree m = mappings.getDst(src.getPreOrderTree(i));
 			if (m != null) seeds.add(m);
 		}
 		List<Tree> candidates = new ArrayList<>();
@@ -77,7 +92,7 @@ public class CompleteBottomUpMatcher extends Matcher {
 				Tree parent = seed.getParent();
 				if (visited.contains(parent)) break;
 				visited.add(parent);
-				if (parent.getType() == src.getType() && !parent.isMatched() && !parent.isRoot()) candidates.add(parent);
+				if (parent.getType() == src.getType() && !isDstMatched(parent) && !parent.isRoot()) candidates.add(parent);
 				seed = parent;
 			}
 		}
@@ -89,11 +104,11 @@ public class CompleteBottomUpMatcher extends Matcher {
 	private void lastChanceMatch(Tree src, Tree dst) {
 		Tree cSrc = src.deepCopy();
 		Tree cDst = dst.deepCopy();
-		TreeUtils.removeMatched(cSrc);
-		TreeUtils.removeMatched(cDst);
+		TreeUtils.removeMatched(cSrc, srcMatched);
+		TreeUtils.removeMatched(cDst, dstMatched);
 
-		if (cSrc.getSize() < SIZE_THESHOLD || cDst.getSize() < SIZE_THESHOLD) {
-			Matcher m = new RtedMatcher(cSrc, cDst);
+		Matcher m = recovery.newMatcher(cSrc, cDst);
+		if (m != null) {
 			m.match();
 			for (Mapping candidate: m.getMappings()) {
 				Tree left = srcIds.getTree(candidate.getFirst().getId());
@@ -102,7 +117,7 @@ public class CompleteBottomUpMatcher extends Matcher {
 				if (left.getId() == src.getId() || right.getId() == dst.getId()) {
 					//System.err.println("Trying to map already mapped source node.");
 					continue;
-				} else if (!left.isMatchable(right)) {
+				} else if (!isMatchable(left, right)) {
 					//System.err.println("Trying to map not compatible nodes.");
 					continue;
 				} else if (left.getParent().getType() != right.getParent().getType()) {
@@ -112,8 +127,8 @@ public class CompleteBottomUpMatcher extends Matcher {
 			}
 		}
 		
-		for (Tree t : src.getTrees()) t.setMatched(true);
-		for (Tree t : dst.getTrees()) t.setMatched(true);
+		for (Tree t : src.getTrees()) srcMatched.set(t.getId());
+		for (Tree t : dst.getTrees()) dstMatched.set(t.getId());
 	}
 	
 	public static class CompleteBottumUpMatcherFactory implements MatcherFactory {
@@ -7,10 +7,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import fr.labri.gumtree.matchers.CandidateIndex;
 import fr.labri.gumtree.matchers.Mapping;
 import fr.labri.gumtree.matchers.Matcher;
 import fr.labri.gumtree.matchers.MatcherFactory;
-import fr.labri.gumtree.matchers.optimal.rted.RtedMatcher;
+import fr.labri.gumtree.matchers.RecoveryMatcherFactory;
 import fr.labri.gumtree.tree.Tree;
 import fr.labri.gumtree.tree.TreeUtils;
 
@@ -18,41 +19,55 @@ import fr.labri.gumtree.tree.TreeUtils;
  * Match the nodes using a bottom-up approach. It browse the nodes of the source and destination trees
  * using a post-order traversal, testing if the two selected trees might be mapped. The two trees are mapped 
  * if they are mappable and have a dice coefficient greater than SIM_THRESHOLD. Whenever two trees are mapped
- * a exact ZS algorithm is applied to look to possibly forgotten nodes.
+ * a recovery matcher is applied to look to possibly forgotten nodes. By default it is RTED, when both
+ * trees have less than SIZE_THESHOLD nodes.
  */
 public class GreedyBottomUpMatcher extends Matcher {
 
 	private static final double SIM_THRESHOLD = 0.50D;
 	
 	private static final int SIZE_THESHOLD = 200;
-
+	
 	private Map<Integer, Tree> srcIds = new HashMap<Integer, Tree>();
 	
 	private Map<Integer, Tree> dstIds = new HashMap<Integer, Tree>();
 	
+	private MatcherFactory recovery = RecoveryMatcherFactory.withSizeLimits(SIZE_THESHOLD, SIZE_THESHOLD);
+	
 	public GreedyBottomUpMatcher(Tree src, Tree dst) {
 		super(src, dst);
 	}
+
+	public MatcherFactory getRecoveryMatcherFactory() {
+		return recovery;
+	}
+
+	/**
+	 * Set the factory of the matchers used to recover the mappings of the descendants of two mapped trees.
+	 * The factory may return null to skip the recovery.
+	 */
+	public void setRecoveryMatcherFactory(MatcherFactory recovery) {
+		this.recovery = recovery;
+	}
 	
 	public void match() {
 		List<Tree> srcs = postOrder(src);
 		List<Tree> dsts = postOrder(dst);
 		for (Tree t : srcs) srcIds.put(t.getId(), t);
 		for (Tree t : dsts) dstIds.put(t.getId(), t);
-		match(TreeUtils.removeMapped(srcs), TreeUtils.removeMapped(dsts));
+		match(TreeUtils.removeMapped(srcs, srcMatched), new CandidateIndex(dst, dstMatched));
 		clean();
 	}
 
-	private void match(List<Tree> poSrc, List<Tree> poDst) {
+	private void match(List<Tree> poSrc, CandidateIndex dsts) {
 		for (Tree src: poSrc)  {
-			for (Tree dst: poDst) {
-				if (src.isMatchable(dst) && !(src.isLeaf() || dst.isLeaf())) {
-					double sim = jaccardSimilarity(src, dst);
-					if (sim >= SIM_THRESHOLD || (src.isRoot() && dst.isRoot()) ) {
-						if (!(src.areDescendantsMatched() || dst.areDescendantsMatched())) lastChanceMatch(src, dst);
-						addMapping(src, dst);
-						break;
-					}
+			if (src.isLeaf() || isSrcMatched(src)) continue;
+			for (Tree dst: dsts.getCandidates(src.getType())) {
+				double sim = jaccardSimilarity(src, dst);
+				if (sim >= SIM_THRESHOLD || (src.isRoot() && dst.isRoot()) ) {
+					if (!(areSrcDescendantsMatched(src) || areDstDescendantsMatched(dst))) lastChanceMatch(src, dst);
+					addMapping(src, dst);
+					break;
 				}
 			}
 		}
@@ -60,26 +75,27 @@ public class GreedyBottomUpMatcher extends Matcher {
 
 	//FIXME checks if it is better or not to remove the already found mappings.
 	private void lastChanceMatch(Tree src, Tree dst) {
-		Tree cSrc = removeMatched(src.deepCopy());
-		Tree cDst = removeMatched(dst.deepCopy());
-		if (cSrc.getSize() < SIZE_THESHOLD && cDst.getSize() < SIZE_THESHOLD) {
-			Matcher m = new RtedMatcher(cSrc, cDst);
+		Tree cSrc = removeMatched(src.deepCopy(), srcMatched);
+		Tree cDst = removeMatched(dst.deepCopy(), dstMatched);
+		Matcher m = recovery.newMatcher(cSrc, cDst);
+		if (m != null) {
+			m.match();
 			for (Mapping candidate: m.getMappings()) {
 				Tree left = srcIds.get(candidate.getFirst().getId());
 				Tree right = dstIds.get(candidate.getSecond().getId());
 				if (left.getId() == src.getId() || right.getId() == dst.getId()) {
 					continue;
-				} else if (left.isMatched() && right.isMatched()) {
+				} else if (isSrcMatched(left) && isDstMatched(right)) {
 					continue;
-				} else if (!left.isMatchable(right)) {
+				} else if (!isMatchable(left, right)) {
 					continue;
 				} else if (left.getParent().getType() != right.getParent().getType()) {
 					continue;
 				} else addMapping(left, right);
 			}
 			
-			for(Tree t : cSrc.getTrees()) srcIds.get(t.getId()).setMatched(true);
-			for(Tree t : cDst.getTrees()) dstIds.get(t.getId()).setMatched(true);
+			for(Tree t : cSrc.getTrees()) srcMatched.set(t.getId());
+			for(Tree t : cDst.getTrees()) dstMatched.set(t.getId());
 		}
 
 	}
@@ -1,15 +1,10 @@
 package fr.labri.gumtree.matchers.heuristic.gt;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
-import fr.labri.gumtree.matchers.Mapping;
 import fr.labri.gumtree.matchers.Matcher;
 import fr.labri.gumtree.matchers.MatcherFactory;
 import fr.labri.gumtree.matchers.MultiMappingStore;
@@ -22,98 +17,132 @@ public class GreedySubtreeMatcher extends SubtreeMatcher {
 	}
 	
 	public void filterMappings(MultiMappingStore multiMappings) {
-		//System.out.println("phase unique");
 		// Select unique mappings first and extract ambiguous mappings.
-		
-		List<Mapping> ambiguousList = new LinkedList<>();
-		Set<Tree> ignored = new HashSet<>();
+		List<List<Tree>> ambiguousSrcs = new ArrayList<>();
+		List<List<Tree>> ambiguousDsts = new ArrayList<>();
+		BitSet ignored = new BitSet();
+		int size = 0;
 		for (Tree src: multiMappings.getSrcs()) {
 			if (multiMappings.isSrcUnique(src)) addFullMapping(src, multiMappings.getDst(src).iterator().next());
-			else if (!ignored.contains(src)) {
+			else if (!ignored.get(src.getId())) {
 				Set<Tree> adsts = multiMappings.getDst(src);
 				Set<Tree> asrcs = multiMappings.getSrc(multiMappings.getDst(src).iterator().next());
-				for (Tree asrc : asrcs) for(Tree adst: adsts) ambiguousList.add(new Mapping(asrc, adst));
-				ignored.addAll(asrcs);
+				ambiguousSrcs.add(new ArrayList<>(asrcs));
+				ambiguousDsts.add(new ArrayList<>(adsts));
+				for (Tree asrc: asrcs) ignored.set(asrc.getId());
+				size += asrcs.size() * adsts.size();
 			}
 		}
 
-		// System.out.println("phase sorting");
-		// Rank the mappings by score.
-		Set<Tree> srcIgnored = new HashSet<>();
-		Set<Tree> dstIgnored = new HashSet<>();
-		Collections.sort(ambiguousList, new MappingComparator(ambiguousList));
-
-		// System.out.println("phase ambiguous");
-		// Select the best ambiguous mappings
-		while (ambiguousList.size() > 0) {
-			Mapping ambiguous = ambiguousList.remove(0);
-			if (!(srcIgnored.contains(ambiguous.getFirst()) || dstIgnored.contains(ambiguous.getSecond()))) {
-				addFullMapping(ambiguous.getFirst(), ambiguous.getSecond());
-				srcIgnored.add(ambiguous.getFirst());
-				dstIgnored.add(ambiguous.getSecond());
+		// Rank the mappings by score. The scores are computed once, after the unique mappings.
+		Tree[] srcs = new Tree[size];
+		Tree[] dsts = new Tree[size];
+		double[] scores = new double[size];
+		int k = 0;
+		for (int g = 0; g < ambiguousSrcs.size(); g++) {
+			List<Tree> asrcs = ambiguousSrcs.get(g);
+			List<Tree> adsts = ambiguousDsts.get(g);
+			int[] dstPositions = new int[adsts.size()];
+			int[] dstSiblings = new int[adsts.size()];
+			for (int j = 0; j < adsts.size(); j++) {
+				dstPositions[j] = position(adsts.get(j));
+				dstSiblings[j] = siblings(adsts.get(j));
+			}
+			for (Tree asrc: asrcs) {
+				int srcPosition = position(asrc);
+				int srcSiblings = siblings(asrc);
+				for (int j = 0; j < adsts.size(); j++) {
+					srcs[k] = asrc;
+					dsts[k] = adsts.get(j);
+					scores[k] = sim(asrc, adsts.get(j), srcPosition, srcSiblings, dstPositions[j], dstSiblings[j]);
+					k++;
+				}
 			}
 		}
-	}
 
-	private class MappingComparator implements Comparator<Mapping> {
-		
-		private Map<Mapping, Double> simMap = new HashMap<>();
-		
-		public MappingComparator(List<Mapping> mappings) {
-			for (Mapping mapping: mappings)
-				simMap.put(mapping, sim(mapping.getFirst(), mapping.getSecond()));
-		}
-		
-		public int compare(Mapping m1, Mapping m2) {
-			return Double.compare(simMap.get(m2), simMap.get(m1));
+		// Select the best ambiguous mappings, using a heap ordered by decreasing score
+		// then by order of extraction.
+		MappingHeap heap = new MappingHeap(scores);
+		BitSet srcIgnored = new BitSet();
+		BitSet dstIgnored = new BitSet();
+		while (!heap.isEmpty()) {
+			int m = heap.pop();
+			if (!(srcIgnored.get(srcs[m].getId()) || dstIgnored.get(dsts[m].getId()))) {
+				addFullMapping(srcs[m], dsts[m]);
+				srcIgnored.set(srcs[m].getId());
+				dstIgnored.set(dsts[m].getId());
+			}
 		}
-		
-		 
-		private Map<Tree, List<Tree>> srcDescendants = new HashMap<>();
-		
-		private Map<Tree, Set<Tree>> dstDescendants = new HashMap<>();
+	}
 
-	
-		protected int numberOfCommonDescendants(Tree src, Tree dst) {
-			if (!srcDescendants.containsKey(src)) srcDescendants.put(src, src.getDescendants());
-			if (!dstDescendants.containsKey(dst)) dstDescendants.put(dst, new HashSet<>(dst.getDescendants()));
-		
-			int common = 0;
-			
-			for (Tree t: srcDescendants.get(src)) {
-				Tree m = mappings.getDst(t);
-				if (m != null && dstDescendants.get(dst).contains(m)) common++;
-			}
+	/**
+	 * Same score than {@link SubtreeMatcher#sim(Tree, Tree)}, with the positions of the
+	 * trees in their parents and the number of children of their parents already computed.
+	 */
+	private double sim(Tree src, Tree dst, int posSrc, int maxSrcPos, int posDst, int maxDstPos) {
+		double jaccard = jaccardSimilarity(src.getParent(), dst.getParent());
+		int maxPosDiff = Math.max(maxSrcPos, maxDstPos);
+		double pos = 1D - ((double) Math.abs(posSrc - posDst) / (double) maxPosDiff);
+		double po = 1D - ((double) Math.abs(src.getId() - dst.getId()) / (double) this.getMaxTreeSize());
+		return 100 * jaccard + 10 * pos + po;
+	}
+
+	private static int position(Tree t) {
+		return (t.isRoot()) ? 0 : t.getParent().getChildPosition(t);
+	}
 
-			return common;
+	private static int siblings(Tree t) {
+		return (t.isRoot()) ? 1 : t.getParent().getChildren().size();
+	}
+
+	/**
+	 * Binary heap of mapping indexes, the first one being the mapping with the highest score,
+	 * and the smallest index among the mappings having the same score.
+	 */
+	private static class MappingHeap {
+
+		private final double[] scores;
+
+		private final int[] heap;
+
+		private int size;
+
+		private MappingHeap(double[] scores) {
+			this.scores = scores;
+			this.size = scores.length;
+			this.heap = new int[size];
+			for (int i = 0; i < size; i++) heap[i] = i;
+			for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
 		}
-		
-		protected double sim(Tree src, Tree dst) {
-			double jaccard = jaccardSimilarity(src.getParent(), dst.getParent());
-			int posSrc = (src.isRoot()) ? 0 : src.getParent().getChildPosition(src);
-			int posDst = (dst.isRoot()) ? 0 : dst.getParent().getChildPosition(dst);
-			int maxSrcPos =  (src.isRoot()) ? 1 : src.getParent().getChildren().size();
-			int maxDstPos =  (dst.isRoot()) ? 1 : dst.getParent().getChildren().size();
-			int maxPosDiff = Math.max(maxSrcPos, maxDstPos);
-			double pos = 1D - ((double) Math.abs(posSrc - posDst) / (double) maxPosDiff);
-			double po = 1D - ((double) Math.abs(src.getId() - dst.getId()) / (double) GreedySubtreeMatcher.this.getMaxTreeSize());
-			return 100 * jaccard + 10 * pos + po;
+
+		private boolean isEmpty() {
+			return size == 0;
 		}
-		
-		protected double jaccardSimilarity(Tree src, Tree dst) {
-			double num = (double) numberOfCommonDescendants(src, dst);
-			double den = (double) srcDescendants.get(src).size() + (double) dstDescendants.get(dst).size() - num;
-			return num/den;
+
+		private int pop() {
+			int top = heap[0];
+			heap[0] = heap[--size];
+			if (size > 0) siftDown(0);
+			return top;
 		}
-		
-		/*
-		
-		@Override
-		public int compare(Mapping m1, Mapping m2) {
-			return Double.compare(sim(m2.getFirst(), m2.getSecond()), sim(m1.getFirst(), m1.getSecond()));
+
+		private boolean before(int m1, int m2) {
+			int c = Double.compare(scores[m2], scores[m1]);
+			return c < 0 || (c == 0 && m1 < m2);
+		}
+
+		private void siftDown(int i) {
+			int m = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) break;
+				if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+				if (!before(heap[child], m)) break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = m;
 		}
-		
-		*/
 
 	}
 	
@@ -8,11 +8,25 @@ import java.util.List;
 import java.util.Set;
 
 import fr.labri.gumtree.algo.HungarianAlgorithm;
+import fr.labri.gumtree.algo.SparseAssignment;
 import fr.labri.gumtree.matchers.MultiMappingStore;
 import fr.labri.gumtree.tree.Tree;
 
 public class HungarianSubtreeMatcher extends SubtreeMatcher {
 
+	/**
+	 * Maximum value of {@link #sim(Tree, Tree)}.
+	 */
+	private static final double MAX_SIM = 111D;
+
+	/**
+	 * Default minimum similarity of the pairs of an ambiguous group that can be mapped. All pairs
+	 * are candidates, so the groups are solved by the Hungarian algorithm on dense cost matrices.
+	 */
+	public static final double DEFAULT_MIN_SIM = 0D;
+
+	private double minSim = DEFAULT_MIN_SIM;
+
 	public HungarianSubtreeMatcher(Tree src, Tree dst) {
 		super(src, dst);
 	}
@@ -35,25 +49,51 @@ public class HungarianSubtreeMatcher extends SubtreeMatcher {
 		Collections.sort(ambiguousList, new MultiMappingComparator());
 
 		for (MultiMappingStore ambiguous: ambiguousList) {
-			System.out.println("hungarian try.");
 			List<Tree> lstSrcs = new ArrayList<>(ambiguous.getSrcs());
 			List<Tree> lstDsts = new ArrayList<>(ambiguous.getDsts());
-			double[][] matrix = new double[lstSrcs.size()][lstDsts.size()];
-			for(int i = 0; i < lstSrcs.size(); i++) 
-				for(int j = 0; j < lstDsts.size(); j++)
-					matrix[i][j] = cost(lstSrcs.get(i), lstDsts.get(j));
-			
-			HungarianAlgorithm hgAlg = new HungarianAlgorithm(matrix);
-			int[] solutions = hgAlg.execute();
+			int[] solutions = (minSim > 0D) ? sparseAssignment(lstSrcs, lstDsts) : denseAssignment(lstSrcs, lstDsts);
 			for (int i = 0; i < solutions.length; i++) {
 				int dstIdx = solutions[i];
 				if (dstIdx != -1) addFullMapping(lstSrcs.get(i), lstDsts.get(dstIdx));
 			}
 		}
 	}
-	
-	private double cost(Tree src, Tree dst) {
-		return 111D - sim(src, dst);
+
+	private int[] denseAssignment(List<Tree> lstSrcs, List<Tree> lstDsts) {
+		double[][] matrix = new double[lstSrcs.size()][lstDsts.size()];
+		for (int i = 0; i < lstSrcs.size(); i++)
+			for (int j = 0; j < lstDsts.size(); j++)
+				matrix[i][j] = MAX_SIM - sim(lstSrcs.get(i), lstDsts.get(j));
+		return new HungarianAlgorithm(matrix).execute();
+	}
+
+	/**
+	 * Solves the assignment over the pairs reaching the minimum similarity. The similarity is still
+	 * computed for every pair, only the solver works on the candidate pairs.
+	 */
+	private int[] sparseAssignment(List<Tree> lstSrcs, List<Tree> lstDsts) {
+		SparseAssignment assignment = new SparseAssignment(lstSrcs.size(), lstDsts.size());
+		for (int i = 0; i < lstSrcs.size(); i++)
+			for (int j = 0; j < lstDsts.size(); j++) {
+				double sim = sim(lstSrcs.get(i), lstDsts.get(j));
+				if (sim >= minSim) assignment.addCandidate(i, j, MAX_SIM - sim);
+			}
+		// Leaving a tree unmapped costs more than any candidate, so that a mapping is always preferred.
+		return assignment.execute(MAX_SIM + 1D);
+	}
+
+	public double getMinSimilarity() {
+		return minSim;
+	}
+
+	/**
+	 * Set the minimum similarity of the pairs of an ambiguous group that can be mapped. A positive
+	 * minimum leaves the dissimilar trees to the bottom-up matchers, and solves the groups with a
+	 * {@link SparseAssignment} over the remaining pairs. It is faster than the Hungarian algorithm
+	 * when few pairs remain, and slower when most of them do.
+	 */
+	public void setMinSimilarity(double minSim) {
+		this.minSim = minSim;
 	}
 	
 	private class MultiMappingComparator implements Comparator<MultiMappingStore> {
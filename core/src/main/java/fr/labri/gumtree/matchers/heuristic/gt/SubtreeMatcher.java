@@ -1,7 +1,10 @@
 package fr.labri.gumtree.matchers.heuristic.gt;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import fr.labri.gumtree.matchers.Matcher;
 import fr.labri.gumtree.matchers.MultiMappingStore;
@@ -22,8 +25,9 @@ public abstract class SubtreeMatcher extends Matcher {
 	public void match() {
 		MultiMappingStore multiMappings = new MultiMappingStore();
 		
-		PriorityTreeList srcs = new PriorityTreeList(src);
-		PriorityTreeList dsts = new PriorityTreeList(dst);
+		// The trees matched by previous matchers are fully mapped, so they are skipped.
+		PriorityTreeList srcs = new PriorityTreeList(src, srcMatched);
+		PriorityTreeList dsts = new PriorityTreeList(dst, dstMatched);
 		
 		while (srcs.peekHeight() != -1 && dsts.peekHeight() != -1) {
 			while (srcs.peekHeight() != dsts.peekHeight()) popLarger(srcs, dsts);
@@ -34,9 +38,23 @@ public abstract class SubtreeMatcher extends Matcher {
 			boolean[] srcMarks = new boolean[hSrcs.size()];
 			boolean[] dstMarks = new boolean[hDsts.size()];
 			
+			// Only trees having the same digest can be clones.
+			Map<Long, List<Integer>> dstBuckets = new HashMap<>();
+			for (int j = 0; j < hDsts.size(); j++) {
+				Long digest = hDsts.get(j).getDigest();
+				List<Integer> bucket = dstBuckets.get(digest);
+				if (bucket == null) {
+					bucket = new ArrayList<>(1);
+					dstBuckets.put(digest, bucket);
+				}
+				bucket.add(j);
+			}
+			
 			for (int i = 0; i < hSrcs.size(); i++) {
-				for (int j = 0; j < hDsts.size(); j++) {
-					Tree src = hSrcs.get(i);
+				Tree src = hSrcs.get(i);
+				List<Integer> bucket = dstBuckets.get(src.getDigest());
+				if (bucket == null) continue;
+				for (int j: bucket) {
 					Tree dst = hDsts.get(j);
 					
 					if (src.isClone(dst)) {
@@ -82,11 +100,15 @@ public abstract class SubtreeMatcher extends Matcher {
 
 		private int currentIdx;
 
+		private BitSet matched;
+
 		@SuppressWarnings("unchecked")
-		public PriorityTreeList(Tree tree) {
+		public PriorityTreeList(Tree tree, BitSet matched) {
 			trees = (List<Tree>[]) new ArrayList[tree.getHeight() - MIN_HEIGHT + 1];
 			maxHeight = tree.getHeight();
+			this.matched = matched;
 			addTree(tree);
+			updateHeight();
 		}
 
 		private int idx(Tree tree) {
@@ -102,7 +124,7 @@ public abstract class SubtreeMatcher extends Matcher {
 		}
 
 		private void addTree(Tree tree) {
-			if (tree.getHeight() >= MIN_HEIGHT) {
+			if (tree.getHeight() >= MIN_HEIGHT && !matched.get(tree.getId())) {
 				int idx = idx(tree);
 				if (trees[idx] == null) trees[idx] = new ArrayList<Tree>();
 				trees[idx].add(tree);
@@ -15,7 +15,9 @@
 
 package fr.labri.gumtree.matchers.optimal.rted;
 
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,9 +28,8 @@ import java.util.Map;
  */
 public class LabelDictionary {
 	public static final int KEY_DUMMY_LABEL = -1;
-	private int count;
 	private Map<String, Integer> strInt;
-	private Map<Integer, String> intStr;
+	private List<String> intStr;
 	private boolean newLabelsAllowed = true;
 
 	/**
@@ -37,9 +38,17 @@ public class LabelDictionary {
 	 * @throws Exception
 	 */
 	public LabelDictionary() {
-		count = 0;
-		strInt = new Hashtable<String, Integer>();
-		intStr = new Hashtable<Integer, String>();
+		strInt = new HashMap<String, Integer>();
+		intStr = new ArrayList<String>();
+	}
+
+	/**
+	 * Removes all the labels, so that the dictionary can be reused.
+	 */
+	public void clear() {
+		strInt.clear();
+		intStr.clear();
+		newLabelsAllowed = true;
 	}
 	
 	
@@ -51,17 +60,17 @@ public class LabelDictionary {
 	 * @return ID of label in the dictionary
 	 */	
 	public int store(String label) {
-		if (strInt.containsKey(label)) {
-			return (strInt.get(label).intValue());
+		Integer intKey = strInt.get(label);
+		if (intKey != null) {
+			return intKey.intValue();
 		} else if (!newLabelsAllowed) { 
 			return KEY_DUMMY_LABEL;
 		} else { // store label
-		Integer intKey = new Integer(count++);
-		strInt.put(label, intKey);
-		intStr.put(intKey, label);
-		
-		return intKey.intValue();		
-	}
+			intKey = intStr.size();
+			strInt.put(label, intKey);
+			intStr.add(label);
+			return intKey.intValue();
+		}
 	}
 	
 	/**
@@ -71,7 +80,7 @@ public class LabelDictionary {
 	 * @return the label with the specified labelID, or null if this dictionary contains no label for labelID
 	 */
 	public String read(int labelID) {
-		return intStr.get(new Integer(labelID));		
+		return (labelID < 0 || labelID >= intStr.size()) ? null : intStr.get(labelID);
 	}
 	
 	/**
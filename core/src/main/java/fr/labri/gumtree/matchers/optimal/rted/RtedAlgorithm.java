@@ -15,8 +15,11 @@
 
 package fr.labri.gumtree.matchers.optimal.rted;
 
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.LinkedList;
 
 import fr.labri.gumtree.tree.Tree;
@@ -25,6 +28,13 @@ import fr.labri.gumtree.tree.Tree;
 /**
  * Computes the tree edit distance using RTED algorithm.
  * 
+ * The strategies of RTED assume unit costs. With unit costs the distances are stored in single
+ * precision, which is exact as long as the distances stay below 2^24. With other costs the
+ * distance and the edit mapping are computed in double precision by the algorithm of Zhang and
+ * Shasha, see {@link WeightedTreeEditDistance}. The rows of the work arrays are kept between
+ * the computations and each of them only grows when needed. Use {@link #estimateMemory(Tree, Tree)}
+ * before computing the distance of large trees.
+ * 
  * @author Mateusz Pawlik, Nikolaus Augsten
  */
 public class RtedAlgorithm {
@@ -71,31 +81,35 @@ public class RtedAlgorithm {
 	private LabelDictionary ld;
 
 	// arrays
-	private int[][] str; // strategy array
-	private double[][] delta; // an array for storing the distances between
+	private byte[][] str; // strategy array
+	private float[][] delta; // an array for storing the distances between
 								// every pair of subtrees
 	private byte[][] deltaBit; // stores the distances difference of a form
 								// delta(F,G)-delta(F°,G°) for every pair of
 								// subtrees, which is at most 1
 	private int[][] ij; // stores a forest preorder for given i and j
-	private long[][][] costV;
 	private long[][] costW;
-	private double[][] t; // T array from Demaine's algorithm, stores
+	private float[][] t; // T array from Demaine's algorithm, stores
 							// delta(Fv,Gij), v on heavy path. Values are
 							// written to t.
-	private double[][] tCOPY; // tCOPY serves for writing values. It may happen
+	private float[][] tCOPY; // tCOPY serves for writing values. It may happen
 								// that in single computePeriod values are
 								// overwritten before they are read because of
 								// the change of forest ordering.
-	private double[][] tTMP;
-	private double[][] s;
-	private double[] q;
+	private float[][] tTMP;
+	private float[][] s;
+	private float[] q;
+	private float[][] forestdist; // forest distances of the single-path functions and of the edit mapping
+	private float[][] treedist; // tree distances of the edit mapping
+	private long[] zeros; // strategy costs of the leafs
+	private Deque<long[]> freeRows = new ArrayDeque<>(); // rows of strategy costs not in use
 	
 	private double da, db, dc;
 	private int previousStrategy;
 	private int[] strStat = new int[5]; // statistics for strategies
 										// LEFT,RIGHT,HEAVY,SUM
 	private double costDel, costIns, costMatch; // edit operations costs
+	private WeightedTreeEditDistance weighted; // computation for non unit costs
 
 	/**
 	 * The constructor. Parameters passed are the edit operation costs.
@@ -110,6 +124,32 @@ public class RtedAlgorithm {
 		this.costMatch = matchCost;
 	}
 
+	/**
+	 * Memory in bytes above which the work arrays of a thread instance are released after use.
+	 */
+	public static final long MAX_RETAINED_MEMORY = 32L * 1024L * 1024L;
+
+	private static final ThreadLocal<RtedAlgorithm> WORKSPACES = new ThreadLocal<RtedAlgorithm>() {
+		@Override
+		protected RtedAlgorithm initialValue() {
+			return new RtedAlgorithm(1D, 1D, 1D);
+		}
+	};
+
+	/**
+	 * Returns the instance of the current thread, with the given costs. Its work arrays are kept
+	 * between the computations, so that the repeated computations on small trees do not allocate.
+	 * The instance must not be used anymore after the next call to this method by the same thread.
+	 * The work arrays retained by the previous computation are released if they exceed
+	 * {@link #MAX_RETAINED_MEMORY}.
+	 */
+	public static RtedAlgorithm getThreadInstance(double delCost, double insCost, double matchCost) {
+		RtedAlgorithm a = WORKSPACES.get();
+		a.trimWorkspace();
+		a.setCustomCosts(delCost, insCost, matchCost);
+		return a;
+	}
+
 	/**
 	 * Computes the tree edit distance between trees t1 and t2.
 	 * 
@@ -119,7 +159,7 @@ public class RtedAlgorithm {
 	 */
 	public double nonNormalizedTreeDist(Tree t1, Tree t2) {
 		init(t1, t2);
-		str = new int[size1][size2];
+		if (!hasUnitCosts()) return weighted().distance();
 		computeOptimalStrategy();
 		return computeDistUsingStrArray(it1, it2);
 	}
@@ -128,6 +168,7 @@ public class RtedAlgorithm {
 		if (it1 == null || it2 == null) {
 			System.err.println("No stored trees to compare.");
 		}
+		if (!hasUnitCosts()) return weighted().distance();
 		if (str == null) {
 			System.err.println("No strategy to use.");
 		}
@@ -141,15 +182,16 @@ public class RtedAlgorithm {
 	 * @param t2
 	 */
 	public void init(Tree t1, Tree t2) {
-		ld = new LabelDictionary();
+		if (ld == null) ld = new LabelDictionary();
+		else ld.clear();
 		it1 = new InfoTree(t1, ld);
 		it2 = new InfoTree(t2, ld);
+		weighted = null;
 		size1 = it1.getSize();
 		size2 = it2.getSize();
-		ij = new int[Math.max(size1, size2)][Math.max(size1, size2)];
-		delta = new double[size1][size2];
-		deltaBit = new byte[size1][size2];
-		costV = new long[3][size1][size2];
+		delta = reuse(delta, size1, size2);
+		for (int x = 0; x < size1; x++) Arrays.fill(delta[x], 0, size2, 0F);
+		deltaBit = reuse(deltaBit, size1, size2);
 		costW = new long[3][size2];
 
 		// Calculate delta between every leaf in G (empty tree) and all the
@@ -190,7 +232,38 @@ public class RtedAlgorithm {
 	}
 
 	/**
-	 * A method for computing and storing the optimal strategy
+	 * Returns an estimate in bytes of the memory needed to compute the tree edit distance and
+	 * the edit mapping of the given trees.
+	 */
+	public static long estimateMemory(Tree t1, Tree t2) {
+		long size1 = t1.getSize();
+		long size2 = t2.getSize();
+		long max = Math.max(size1, size2);
+		long depth = Math.max(t1.getHeight(), t2.getHeight()) + 1;
+		long rowOverhead = 16L;
+		long strategies = size1 * (size2 + rowOverhead); // str
+		long distances = size1 * (4L * size2 + rowOverhead) + size1 * (size2 + rowOverhead); // delta and deltaBit
+		long costs = 2L * depth * (3L * 8L * size2 + rowOverhead); // live rows of the strategy costs
+		long heavyPaths = 4L * max * (4L * max + rowOverhead); // ij, t, tCOPY and s
+		long mapping = 2L * (size1 + 1) * (4L * (size2 + 1) + rowOverhead); // treedist and forestdist
+		return strategies + distances + costs + heavyPaths + mapping;
+	}
+
+	/**
+	 * Indicates whether or not the estimated memory needed to compute the edit mapping of the given trees
+	 * is currently available. The memory retained by the instance of the current thread is counted as
+	 * available, since its work arrays are either reused or released by the computation.
+	 */
+	public static boolean fitsInMemory(Tree t1, Tree t2) {
+		Runtime runtime = Runtime.getRuntime();
+		long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory()) + WORKSPACES.get().retainedMemory();
+		return estimateMemory(t1, t2) < available;
+	}
+
+	/**
+	 * A method for computing and storing the optimal strategy. The strategy costs of a node of the
+	 * left tree are only needed until its parent is processed, therefore they are stored in rows taken
+	 * from a pool, the number of rows used at the same time being bounded by the depth of the tree.
 	 */
 	public void computeOptimalStrategy() {
 		long heavyMin, revHeavyMin, leftMin, revLeftMin, rightMin, revRightMin;
@@ -215,7 +288,18 @@ public class RtedAlgorithm {
 		int[] post2parent1 = it1.info[POST2_PARENT];
 		int[] post2parent2 = it2.info[POST2_PARENT];
 
-		str = new int[size1][size2];
+		str = reuse(str, size1, size2);
+
+		// costV[v] stores the costs of v for the strategies LEFT, RIGHT and HEAVY at
+		// the offsets 0, size2 and 2 * size2. Leafs share a row of zeros.
+		long[][] costV = new long[size1][];
+		if (zeros == null || zeros.length < 3 * size2) {
+			zeros = new long[3 * size2];
+			freeRows.clear();
+		}
+		int left = LEFT * size2;
+		int right = RIGHT * size2;
+		int heavy = HEAVY * size2;
 
 		// v represents nodes of left input tree in postorder
 		// w represents nodes of right input tree in postorder
@@ -223,6 +307,16 @@ public class RtedAlgorithm {
 			Arrays.fill(costW[0], 0);
 			Arrays.fill(costW[1], 0);
 			Arrays.fill(costW[2], 0);
+			long[] rowV = costV[v] == null ? zeros : costV[v];
+			parent1 = post2parent1[v];
+			long[] rowParent = null;
+			if (parent1 != -1) {
+				rowParent = costV[parent1];
+				if (rowParent == null) {
+					rowParent = freeRows.isEmpty() ? new long[zeros.length] : freeRows.pop();
+					costV[parent1] = rowParent;
+				}
+			}
 			for (int w = 0; w < size2; w++) {
 				if (post2size2[w] == 1) {
 					// put zeros into arrays
@@ -230,54 +324,57 @@ public class RtedAlgorithm {
 					costW[RIGHT][w] = 0;
 					costW[HEAVY][w] = 0;
 				}
-				if (post2size1[v] == 1) {
-					// put zeros into arrays
-					costV[LEFT][v][w] = 0;
-					costV[RIGHT][v][w] = 0;
-					costV[HEAVY][v][w] = 0;
-				}
-
-				// TODO: some things below may be put to outer loop
 
 				// count the minimum + get the strategy
 				heavyMin = (long) post2size1[v] * (long) post2descSum2[w]
-						+ costV[HEAVY][v][w];
+						+ rowV[heavy + w];
 				revHeavyMin = (long) post2size2[w] * (long) post2descSum1[v]
 						+ costW[HEAVY][w];
 
 				leftMin = (long) post2size1[v] * (long) post2krSum2[w]
-						+ costV[LEFT][v][w];
+						+ rowV[left + w];
 				revLeftMin = (long) post2size2[w] * (long) post2krSum1[v]
 						+ costW[LEFT][w];
 
 				rightMin = (long) post2size1[v] * (long) post2revkrSum2[w]
-						+ costV[RIGHT][v][w];
+						+ rowV[right + w];
 				revRightMin = (long) post2size2[w] * (long) post2revkrSum1[v]
 						+ costW[RIGHT][w];
 
-				long[] mins = { leftMin, rightMin, heavyMin, Long.MAX_VALUE,
-						revLeftMin, revRightMin, revHeavyMin };
-
+				// the first minimum wins, in the order of the strategy constants
 				min = leftMin;
-				strategy = 0;
-				for (int i = 1; i <= 6; i++) {
-					if (mins[i] < min) {
-						min = mins[i];
-						strategy = i;
-					}
+				strategy = LEFT;
+				if (rightMin < min) {
+					min = rightMin;
+					strategy = RIGHT;
+				}
+				if (heavyMin < min) {
+					min = heavyMin;
+					strategy = HEAVY;
+				}
+				if (revLeftMin < min) {
+					min = revLeftMin;
+					strategy = REVLEFT;
+				}
+				if (revRightMin < min) {
+					min = revRightMin;
+					strategy = REVRIGHT;
+				}
+				if (revHeavyMin < min) {
+					min = revHeavyMin;
+					strategy = REVHEAVY;
 				}
 
 				// store the strategy for the minimal cost
-				str[v][w] = strategy;
+				str[v][w] = (byte) strategy;
 
 				// fill the cost arrays
-				parent1 = post2parent1[v];
-				if (parent1 != -1) {
-					costV[HEAVY][parent1][w] += nodeTypeHeavy1[v] ? costV[HEAVY][v][w]
+				if (rowParent != null) {
+					rowParent[heavy + w] += nodeTypeHeavy1[v] ? rowV[heavy + w]
 							: min;
-					costV[RIGHT][parent1][w] += nodeTypeRigt1[v] ? costV[RIGHT][v][w]
+					rowParent[right + w] += nodeTypeRigt1[v] ? rowV[right + w]
 							: min;
-					costV[LEFT][parent1][w] += nodeTypeLeft1[v] ? costV[LEFT][v][w]
+					rowParent[left + w] += nodeTypeLeft1[v] ? rowV[left + w]
 							: min;
 				}
 				parent2 = post2parent2[w];
@@ -290,6 +387,11 @@ public class RtedAlgorithm {
 							: min;
 				}
 			}
+			if (rowV != zeros) {
+				Arrays.fill(rowV, 0);
+				freeRows.push(rowV);
+				costV[v] = null;
+			}
 		}
 	}
 
@@ -474,7 +576,7 @@ public class RtedAlgorithm {
 	private void treeEditDist(InfoTree it1, InfoTree it2, int i, int j) {
 		int m = i - it1.info[POST2_LLD][i] + 2;
 		int n = j - it2.info[POST2_LLD][j] + 2;
-		double[][] forestdist = new double[m][n];
+		forestdist = reuse(forestdist, m, n);
 		int ioff = it1.info[POST2_LLD][i] - 1;
 		int joff = it2.info[POST2_LLD][j] - 1;
 		boolean switched = it1.isSwitched();
@@ -489,7 +591,7 @@ public class RtedAlgorithm {
 					da = forestdist[i1 - 1][j1] + costDel;
 					db = forestdist[i1][j1 - 1] + costIns;
 					dc = forestdist[i1 - 1][j1 - 1] + u;
-					forestdist[i1][j1] = (da < db) ? ((da < dc) ? da : dc) : ((db < dc) ? db : dc);
+					forestdist[i1][j1] = (float) ((da < db) ? ((da < dc) ? da : dc) : ((db < dc) ? db : dc));
 					setDeltaValue(i1 + ioff, j1 + joff, forestdist[i1 - 1][j1 - 1], switched);
 					setDeltaBitValue(i1 + ioff, j1 + joff, (byte) ((forestdist[i1][j1] - forestdist[i1 - 1][j1 - 1] > 0) ? 1 : 0), switched);
 				} else {
@@ -499,7 +601,7 @@ public class RtedAlgorithm {
 					db = forestdist[i1][j1 - 1] + costIns;
 					dc = forestdist[it1.info[POST2_LLD][i1 + ioff] - 1 - ioff][it2.info[POST2_LLD][j1 + joff]
 							- 1 - joff] + (switched ? delta[j1 + joff][i1 + ioff] : delta[i1 + ioff][j1 + joff]) + u;
-					forestdist[i1][j1] = (da < db) ? ((da < dc) ? da : dc) : ((db < dc) ? db : dc);
+					forestdist[i1][j1] = (float) ((da < db) ? ((da < dc) ? da : dc) : ((db < dc) ? db : dc));
 				}
 			}
 		}
@@ -534,7 +636,7 @@ public class RtedAlgorithm {
 	private void treeEditDistRev(InfoTree it1, InfoTree it2, int i, int j) {
 		int m = i - it1.info[RPOST2_RLD][i] + 2;
 		int n = j - it2.info[RPOST2_RLD][j] + 2;
-		double[][] forestdist = new double[m][n];
+		forestdist = reuse(forestdist, m, n);
 		int ioff = it1.info[RPOST2_RLD][i] - 1;
 		int joff = it2.info[RPOST2_RLD][j] - 1;
 		boolean switched = it1.isSwitched();
@@ -553,7 +655,7 @@ public class RtedAlgorithm {
 					da = forestdist[i1 - 1][j1] + costDel;
 					db = forestdist[i1][j1 - 1] + costIns;
 					dc = forestdist[i1 - 1][j1 - 1] + u;
-					forestdist[i1][j1] = (da < db) ? ((da < dc) ? da : dc) : ((db < dc) ? db : dc);
+					forestdist[i1][j1] = (float) ((da < db) ? ((da < dc) ? da : dc) : ((db < dc) ? db : dc));
 
 					setDeltaValue(it1.info[RPOST2_POST][i1 + ioff], it2.info[RPOST2_POST][j1 + joff], forestdist[i1 - 1][j1 - 1], switched);
 					setDeltaBitValue(it1.info[RPOST2_POST][i1 + ioff], it2.info[RPOST2_POST][j1 + joff],
@@ -576,8 +678,8 @@ public class RtedAlgorithm {
 									+ ioff]]
 									: delta[it1.info[RPOST2_POST][i1 + ioff]][it2.info[RPOST2_POST][j1
 											+ joff]]) + u;
-					forestdist[i1][j1] = (da < db) ? ((da < dc) ? da : dc)
-							: ((db < dc) ? db : dc);
+					forestdist[i1][j1] = (float) ((da < db) ? ((da < dc) ? da : dc)
+							: ((db < dc) ? db : dc));
 				}
 			}
 		}
@@ -608,10 +710,16 @@ public class RtedAlgorithm {
 
 		// Initialize arrays to their maximal possible size for current pairs of
 		// subtrees.
-		t = new double[gSize][gSize];
-		tCOPY = new double[gSize][gSize];
-		s = new double[fSize][gSize];
-		q = new double[fSize];
+		t = reuse(t, gSize, gSize);
+		tCOPY = reuse(tCOPY, gSize, gSize);
+		s = reuse(s, fSize, gSize);
+		if (q == null || q.length < fSize) q = new float[fSize];
+		for (int i = 0; i < gSize; i++) {
+			Arrays.fill(t[i], 0, gSize, 0F);
+			Arrays.fill(tCOPY[i], 0, gSize, 0F);
+		}
+		for (int i = 0; i < fSize; i++) Arrays.fill(s[i], 0, gSize, 0F);
+		Arrays.fill(q, 0, fSize, 0F);
 
 		int vp = -1;
 		int nextVp = -1;
@@ -625,7 +733,7 @@ public class RtedAlgorithm {
 						jOfi = jOfI(it2, i, gSize, gRevPre, gPre, strategy,
 								gTreeSize);
 						for (int j = jOfi; j >= 0; j--) {
-							t[i][j] = (gSize - (i + j)) * costIns;
+							t[i][j] = (float) ((gSize - (i + j)) * costIns);
 						}
 					}
 					previousStrategy = strategy;
@@ -637,7 +745,7 @@ public class RtedAlgorithm {
 						jOfi = jOfI(it2, i, gSize, gRevPre, gPre, LEFT,
 								gTreeSize);
 						for (int j = jOfi; j >= 0; j--) {
-							t[i][j] = (gSize - (i + j)) * costIns;
+							t[i][j] = (float) ((gSize - (i + j)) * costIns);
 						}
 					}
 					previousStrategy = LEFT;
@@ -648,7 +756,7 @@ public class RtedAlgorithm {
 						jOfi = jOfI(it2, i, gSize, gRevPre, gPre, RIGHT,
 								gTreeSize);
 						for (int j = jOfi; j >= 0; j--) {
-							t[i][j] = (gSize - (i + j)) * costIns;
+							t[i][j] = (float) ((gSize - (i + j)) * costIns);
 						}
 					}
 					previousStrategy = RIGHT;
@@ -855,10 +963,10 @@ public class RtedAlgorithm {
 					}
 
 					// fill S table
-					s[kPrime - 1][j] = (deleteFromLeft < deleteFromRight) ? ((deleteFromLeft < match) ? deleteFromLeft
+					s[kPrime - 1][j] = (float) ((deleteFromLeft < deleteFromRight) ? ((deleteFromLeft < match) ? deleteFromLeft
 							: match)
 							: ((deleteFromRight < match) ? deleteFromRight
-									: match);
+									: match));
 
 					// reset the minimum arguments' values
 					deleteFromRight = costIns;
@@ -883,8 +991,7 @@ public class RtedAlgorithm {
 			// compute table T => add row to T
 			// we have to copy the values, otherwise they may be overwritten t
 			// early
-			t[i] = (realStrategy == BOTH && aStrategy == LEFT) ? s[k - 1 - 1]
-					.clone() : s[k - 1].clone();
+			System.arraycopy((realStrategy == BOTH && aStrategy == LEFT) ? s[k - 1 - 1] : s[k - 1], 0, t[i], 0, gSize);
 
 			if (i > 0) {
 				// compute table Q
@@ -953,6 +1060,8 @@ public class RtedAlgorithm {
 		int[] post2pre = it.info[POST2_PRE];
 		int[] rpost2post = it.info[RPOST2_POST];
 
+		ij = reuse(ij, subtreeSize, subtreeSize);
+
 		if (aStrategy == LEFT) {
 			for (int x = 0; x < subtreeSize; x++) {
 				ij[0][x] = x + subtreePreorder;
@@ -1008,7 +1117,7 @@ public class RtedAlgorithm {
 								- (aSubtreePre + aI)]];
 	}
 
-	private void setDeltaValue(int a, int b, double value, boolean switched) {
+	private void setDeltaValue(int a, int b, float value, boolean switched) {
 		if (switched) {
 			delta[b][a] = value;
 		} else {
@@ -1024,28 +1133,115 @@ public class RtedAlgorithm {
 		}
 	}
 
+	/**
+	 * Returns the given array, or a longer copy of it, after replacing its first rows which are
+	 * shorter than the given number of columns. The rows grow independently, so that computations
+	 * on trees of different shapes do not retain the product of their largest dimensions. The
+	 * content of a reused row is left as is.
+	 */
+	private static float[][] reuse(float[][] a, int rows, int cols) {
+		a = (a == null) ? new float[rows][] : (a.length < rows) ? Arrays.copyOf(a, rows) : a;
+		for (int i = 0; i < rows; i++) if (a[i] == null || a[i].length < cols) a[i] = new float[cols];
+		return a;
+	}
+
+	private static byte[][] reuse(byte[][] a, int rows, int cols) {
+		a = (a == null) ? new byte[rows][] : (a.length < rows) ? Arrays.copyOf(a, rows) : a;
+		for (int i = 0; i < rows; i++) if (a[i] == null || a[i].length < cols) a[i] = new byte[cols];
+		return a;
+	}
+
+	private static int[][] reuse(int[][] a, int rows, int cols) {
+		a = (a == null) ? new int[rows][] : (a.length < rows) ? Arrays.copyOf(a, rows) : a;
+		for (int i = 0; i < rows; i++) if (a[i] == null || a[i].length < cols) a[i] = new int[cols];
+		return a;
+	}
+
+	/**
+	 * Returns an estimate in bytes of the memory retained by the work arrays.
+	 */
+	long retainedMemory() {
+		long memory = memory(delta, 4) + memory(deltaBit, 1) + memory(str, 1) + memory(ij, 4)
+				+ memory(t, 4) + memory(tCOPY, 4) + memory(s, 4) + memory(forestdist, 4) + memory(treedist, 4)
+				+ memory(costW, 8) + memory(freeRows.toArray(), 8);
+		if (q != null) memory += 4L * q.length;
+		if (zeros != null) memory += 8L * zeros.length;
+		return memory;
+	}
+
+	private static long memory(Object[] rows, int elementSize) {
+		if (rows == null) return 0L;
+		long memory = 16L + 4L * rows.length;
+		for (Object row: rows) if (row != null) memory += 16L + (long) elementSize * Array.getLength(row);
+		return memory;
+	}
+
+	/**
+	 * Releases the work arrays if they retain more than {@link #MAX_RETAINED_MEMORY}, and the
+	 * results of the last computation with non unit costs.
+	 */
+	void trimWorkspace() {
+		weighted = null;
+		if (retainedMemory() <= MAX_RETAINED_MEMORY) return;
+		delta = null;
+		deltaBit = null;
+		str = null;
+		ij = null;
+		costW = null;
+		t = null;
+		tCOPY = null;
+		tTMP = null;
+		s = null;
+		q = null;
+		forestdist = null;
+		treedist = null;
+		zeros = null;
+		freeRows.clear();
+		it1 = null;
+		it2 = null;
+		ld = null;
+	}
+
 	public void setCustomCosts(double costDel, double costIns, double costMatch) {
 		this.costDel = costDel;
 		this.costIns = costIns;
 		this.costMatch = costMatch;
+		weighted = null;
+	}
+
+	private boolean hasUnitCosts() {
+		return costDel == 1D && costIns == 1D && costMatch == 1D;
+	}
+
+	/**
+	 * Returns the double precision computation of the stored trees, used when the costs
+	 * are not unit costs.
+	 */
+	private WeightedTreeEditDistance weighted() {
+		if (weighted == null) weighted = new WeightedTreeEditDistance(it1, it2, costDel, costIns, costMatch);
+		return weighted;
 	}
 
 	public void setCustomStrategy(int[][] strategyArray) {
-		str = strategyArray;
+		str = new byte[strategyArray.length][];
+		for (int i = 0; i < strategyArray.length; i++) {
+			str[i] = new byte[strategyArray[i].length];
+			for (int j = 0; j < strategyArray[i].length; j++) str[i][j] = (byte) strategyArray[i][j];
+		}
 	}
 
 	public void setCustomStrategy(int strategy, boolean ifSwitch) {
-		str = new int[size1][size2];
+		str = new byte[size1][size2];
 		if (ifSwitch) {
 			for (int i = 0; i < size1; i++) {
 				for (int j = 0; j < size2; j++) {
-					str[i][j] = it1.info[POST2_SIZE][i] >= it2.info[POST2_SIZE][j] ? strategy
-							: strategy + 4;
+					str[i][j] = (byte) (it1.info[POST2_SIZE][i] >= it2.info[POST2_SIZE][j] ? strategy
+							: strategy + 4);
 				}
 			}
 		} else {
 			for (int i = 0; i < size1; i++) {
-				Arrays.fill(str[i], strategy);
+				Arrays.fill(str[i], (byte) strategy);
 			}
 		}
 	}
@@ -1064,10 +1260,11 @@ public class RtedAlgorithm {
 	 *         postorderID of the empty node (insertion, deletion) is zero.
 	 */
 	public LinkedList<int[]> computeEditMapping() {
+		if (!hasUnitCosts()) return weighted().editMapping();
 
 		// initialize tree and forest distance arrays
-		double[][] treedist = new double[size1 + 1][size2 + 1];
-		double[][] forestdist = new double[size1 + 1][size2 + 1];
+		treedist = reuse(treedist, size1 + 1, size2 + 1);
+		forestdist = reuse(forestdist, size1 + 1, size2 + 1);
 		
 		boolean rootNodePair = true;
 
@@ -1114,14 +1311,15 @@ public class RtedAlgorithm {
 			int firstCol = it2.getInfo(POST2_LLD, lastCol - 1) + 1 - 1;
 			int row = lastRow;
 			int col = lastCol;
+			// The sums are rounded to float as in forestDist, so that the equalities are exact for any costs.
 			while ((row > firstRow) || (col > firstCol)) {
 				if ((row > firstRow)
-						&& (forestdist[row - 1][col] + costDel == forestdist[row][col])) {
+						&& ((float) (forestdist[row - 1][col] + costDel) == forestdist[row][col])) {
 					// node with postorderID row is deleted from ted1
 					editMapping.push(new int[] { row, 0 });
 					row--;
 				} else if ((col > firstCol)
-						&& (forestdist[row][col - 1] + costIns == forestdist[row][col])) {
+						&& ((float) (forestdist[row][col - 1] + costIns) == forestdist[row][col])) {
 					// node with postorderID col is inserted into ted2
 					editMapping.push(new int[] { 0, col });
 					col--;
@@ -1150,12 +1348,12 @@ public class RtedAlgorithm {
 		return editMapping;
 	}
 	
-	private void forestDist(InfoTree ted1, InfoTree ted2, int i, int j, double[][] treedist, double[][] forestdist) {
+	private void forestDist(InfoTree ted1, InfoTree ted2, int i, int j, float[][] treedist, float[][] forestdist) {
 		forestdist[ted1.getInfo(POST2_LLD, i - 1) + 1 - 1][ted2.getInfo(POST2_LLD, j - 1) + 1 - 1] = 0;
 		for (int di = ted1.getInfo(POST2_LLD, i - 1) + 1; di <= i; di++) {
-			forestdist[di][ted2.getInfo(POST2_LLD, j - 1) + 1 - 1] = forestdist[di - 1][ted2.getInfo(POST2_LLD, j - 1) + 1 - 1] + costDel;
+			forestdist[di][ted2.getInfo(POST2_LLD, j - 1) + 1 - 1] = (float) (forestdist[di - 1][ted2.getInfo(POST2_LLD, j - 1) + 1 - 1] + costDel);
 			for (int dj = ted2.getInfo(POST2_LLD, j - 1) + 1; dj <= j; dj++) {
-				forestdist[ted1.getInfo(POST2_LLD, i - 1) + 1 - 1][dj] = forestdist[ted1.getInfo(POST2_LLD, i - 1) + 1 - 1][dj - 1]	+ costIns;
+				forestdist[ted1.getInfo(POST2_LLD, i - 1) + 1 - 1][dj] = (float) (forestdist[ted1.getInfo(POST2_LLD, i - 1) + 1 - 1][dj - 1]	+ costIns);
 
 				if ((ted1.getInfo(POST2_LLD, di - 1) == ted1.getInfo(POST2_LLD, i - 1))
 						&& (ted2.getInfo(POST2_LLD, dj - 1) == ted2.getInfo(POST2_LLD, j - 1))) {
@@ -1163,13 +1361,13 @@ public class RtedAlgorithm {
 					if (!(ted1.getInfo(POST2_LABEL, di - 1) == ted2.getInfo(POST2_LABEL, dj - 1))) {
 						costRen = costMatch;
 					}
-					forestdist[di][dj] = Math.min(Math.min(
+					forestdist[di][dj] = (float) Math.min(Math.min(
 							forestdist[di - 1][dj] + costDel,
 							forestdist[di][dj - 1] + costIns),
 							forestdist[di - 1][dj - 1] + costRen);
 					treedist[di][dj] = forestdist[di][dj];
 				} else {
-					forestdist[di][dj] = Math.min(Math.min(
+					forestdist[di][dj] = (float) Math.min(Math.min(
 							forestdist[di - 1][dj] + costDel,
 							forestdist[di][dj - 1] + costIns),
 							forestdist[ted1.getInfo(POST2_LLD, di - 1) + 1 - 1][ted2.getInfo(POST2_LLD, dj - 1) + 1 - 1]
@@ -12,19 +12,32 @@ public class RtedMatcher extends Matcher {
 		super(src, dst);
 	}
 
+	/**
+	 * Compute an optimal edit mapping of the trees. Nothing is matched when the memory needed
+	 * by the computation is not available.
+	 */
 	@Override
 	public void match() {
-		RtedAlgorithm a = new RtedAlgorithm(1D, 1D, 1D);
-		a.init(src, dst);
-		a.computeOptimalStrategy();
-		a.nonNormalizedTreeDist();
-		List<int[]> arrayMappings = a.computeEditMapping();
+		if (!RtedAlgorithm.fitsInMemory(src, dst)) {
+			LOGGER.warning(String.format("Not enough memory to match trees of size %d and %d.", src.getSize(), dst.getSize()));
+			return;
+		}
+		RtedAlgorithm a = RtedAlgorithm.getThreadInstance(1D, 1D, 1D);
+		List<int[]> arrayMappings;
+		try {
+			a.init(src, dst);
+			a.computeOptimalStrategy();
+			a.nonNormalizedTreeDist();
+			arrayMappings = a.computeEditMapping();
+		} finally {
+			a.trimWorkspace();
+		}
 		List<Tree> srcs = TreeUtils.postOrder(src);
 		List<Tree> dsts = TreeUtils.postOrder(dst);
 		for (int[] m: arrayMappings) if (m[0] != 0 && m[1] != 0) {
 			Tree src = srcs.get(m[0] - 1);
 			Tree dst = dsts.get(m[1] - 1);
-			if (src.isMatchable(dst)) addMapping(src, dst);
+			if (isMatchable(src, dst)) addMapping(src, dst);
 		}
 	}
 
@@ -0,0 +1,124 @@
+package fr.labri.gumtree.matchers.optimal.rted;
+
+import java.util.LinkedList;
+
+/**
+ * Tree edit distance and edit mapping of Zhang and Shasha for arbitrary costs, with the distances
+ * stored in double precision. It is used by {@link RtedAlgorithm} when the costs are not unit costs,
+ * since the strategies of RTED rely on unit costs. The edit mapping has the same format than
+ * {@link RtedAlgorithm#computeEditMapping()}.
+ */
+class WeightedTreeEditDistance {
+
+	private final int[] lld1;
+
+	private final int[] lld2;
+
+	private final int[] labels1;
+
+	private final int[] labels2;
+
+	private final double costDel;
+
+	private final double costIns;
+
+	private final double costMatch;
+
+	// Distances between subtrees and forests, indexed by postorder ids starting at 1.
+	private final double[][] treedist;
+
+	private final double[][] forestdist;
+
+	WeightedTreeEditDistance(InfoTree it1, InfoTree it2, double costDel, double costIns, double costMatch) {
+		this.lld1 = it1.getInfoArray(InfoTree.POST2_LLD);
+		this.lld2 = it2.getInfoArray(InfoTree.POST2_LLD);
+		this.labels1 = it1.getInfoArray(InfoTree.POST2_LABEL);
+		this.labels2 = it2.getInfoArray(InfoTree.POST2_LABEL);
+		this.costDel = costDel;
+		this.costIns = costIns;
+		this.costMatch = costMatch;
+		this.treedist = new double[lld1.length + 1][lld2.length + 1];
+		this.forestdist = new double[lld1.length + 1][lld2.length + 1];
+		boolean[] keyRoots1 = keyRoots(lld1);
+		boolean[] keyRoots2 = keyRoots(lld2);
+		for (int i = 1; i <= lld1.length; i++)
+			if (keyRoots1[i - 1])
+				for (int j = 1; j <= lld2.length; j++)
+					if (keyRoots2[j - 1]) forestDist(i, j);
+	}
+
+	double distance() {
+		return treedist[lld1.length][lld2.length];
+	}
+
+	LinkedList<int[]> editMapping() {
+		LinkedList<int[]> editMapping = new LinkedList<int[]>();
+		LinkedList<int[]> treePairs = new LinkedList<int[]>();
+		treePairs.push(new int[] { lld1.length, lld2.length });
+		boolean rootNodePair = true;
+		while (!treePairs.isEmpty()) {
+			int[] treePair = treePairs.pop();
+			int lastRow = treePair[0];
+			int lastCol = treePair[1];
+			// The forest distances of the root pair are the last ones computed.
+			if (!rootNodePair) forestDist(lastRow, lastCol);
+			rootNodePair = false;
+
+			int firstRow = lld1[lastRow - 1];
+			int firstCol = lld2[lastCol - 1];
+			int row = lastRow;
+			int col = lastCol;
+			while ((row > firstRow) || (col > firstCol)) {
+				if ((row > firstRow) && (forestdist[row - 1][col] + costDel == forestdist[row][col])) {
+					editMapping.push(new int[] { row, 0 });
+					row--;
+				} else if ((col > firstCol) && (forestdist[row][col - 1] + costIns == forestdist[row][col])) {
+					editMapping.push(new int[] { 0, col });
+					col--;
+				} else if (lld1[row - 1] == lld1[lastRow - 1] && lld2[col - 1] == lld2[lastCol - 1]) {
+					editMapping.push(new int[] { row, col });
+					row--;
+					col--;
+				} else {
+					treePairs.push(new int[] { row, col });
+					row = lld1[row - 1];
+					col = lld2[col - 1];
+				}
+			}
+		}
+		return editMapping;
+	}
+
+	private void forestDist(int i, int j) {
+		int li = lld1[i - 1];
+		int lj = lld2[j - 1];
+		forestdist[li][lj] = 0;
+		for (int di = li + 1; di <= i; di++) forestdist[di][lj] = forestdist[di - 1][lj] + costDel;
+		for (int dj = lj + 1; dj <= j; dj++) forestdist[li][dj] = forestdist[li][dj - 1] + costIns;
+		for (int di = li + 1; di <= i; di++) {
+			for (int dj = lj + 1; dj <= j; dj++) {
+				double d = Math.min(forestdist[di - 1][dj] + costDel, forestdist[di][dj - 1] + costIns);
+				if (lld1[di - 1] == li && lld2[dj - 1] == lj) {
+					double costRen = (labels1[di - 1] == labels2[dj - 1]) ? 0 : costMatch;
+					forestdist[di][dj] = Math.min(d, forestdist[di - 1][dj - 1] + costRen);
+					treedist[di][dj] = forestdist[di][dj];
+				} else forestdist[di][dj] = Math.min(d, forestdist[lld1[di - 1]][lld2[dj - 1]] + treedist[di][dj]);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether each node is a key root, that is the node having the largest postorder id
+	 * among the nodes sharing its left-most leaf.
+	 */
+	private static boolean[] keyRoots(int[] lld) {
+		boolean[] keyRoots = new boolean[lld.length];
+		boolean[] seen = new boolean[lld.length];
+		for (int i = lld.length - 1; i >= 0; i--) {
+			if (!seen[lld[i]]) keyRoots[i] = true;
+			seen[lld[i]] = true;
+		}
+		return keyRoots;
+	}
+
+}
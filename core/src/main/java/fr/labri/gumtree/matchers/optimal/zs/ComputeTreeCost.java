@@ -1,11 +1,14 @@
 package fr.labri.gumtree.matchers.optimal.zs;
 
-import uk.ac.shef.wit.simmetrics.similaritymetrics.QGramsDistance;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import fr.labri.gumtree.algo.QGrams;
 import fr.labri.gumtree.tree.Tree;
 
 public class ComputeTreeCost {
 
-	private static QGramsDistance qgram = new QGramsDistance();
+	private final Map<Tree, long[]> profiles = new IdentityHashMap<>();
 
 	public ComputeTreeCost() {
 	}
@@ -13,7 +16,7 @@ public class ComputeTreeCost {
 	public double updateCost(Tree src, Tree dst) {
 		if (src.getType() == dst.getType())
 			if ("".equals(src.getLabel()) || "".equals(dst.getLabel())) return 1;
-			else return 1D - qgram.getSimilarity(src.getLabel(), dst.getLabel());
+			else return 1D - QGrams.similarity(profile(src), profile(dst));
 		else return 3D;
 	}
 
@@ -25,4 +28,13 @@ public class ComputeTreeCost {
 		return 1D;
 	}
 
+	private long[] profile(Tree tree) {
+		long[] profile = profiles.get(tree);
+		if (profile == null) {
+			profile = QGrams.profile(tree.getLabel());
+			profiles.put(tree, profile);
+		}
+		return profile;
+	}
+
 }
@@ -9,19 +9,31 @@ import fr.labri.gumtree.tree.Tree;
 
 public class ZsMatcher extends Matcher {
 	
+	/**
+	 * Memory in bytes above which the arrays of a thread are released after matching.
+	 */
+	public static final long MAX_RETAINED_MEMORY = 32L * 1024L * 1024L;
+
+	private static final ThreadLocal<Workspace> WORKSPACES = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
 	private TreeInfo src, dst;
 	
 	private double[][] dist;
 	
+	private Workspace workspace;
+	
 	private ComputeTreeCost cost;
 	
 	public ZsMatcher(Tree src, Tree dst) {
 		super(src, dst);
 		this.src = new TreeInfo(src);
 		this.dst = new TreeInfo(dst);
-		dist = new double[src.getSize()][dst.getSize()];
 		cost = new ComputeTreeCost();
-		for (int i = 0; i < dist.length; i++) Arrays.fill(dist[i], -1);
 	}
 	
 	private void computeMappings() {
@@ -66,8 +78,8 @@ public class ZsMatcher extends Matcher {
 		int ishift = i - li + 2;		
 		int jshift = j - lj + 2;
 		
-		double[][] fd = new double[ishift][jshift];
-		
+		double[][] fd = workspace.pushForestDist(ishift, jshift);
+		fd[0][0] = 0D;
 		for (int i1 = 1; i1 < ishift; i1++) fd[i1][0] = fd[i1 - 1][0] + src.deleteCost(i1 - 1);
 		for (int j1 = 1; j1 < jshift; j1++) fd[0][j1] = fd[0][j1 - 1] + dst.insertCost(j1 - 1);		
 		for (int k = li, kk = 1; k <= i; k++, kk++)
@@ -85,6 +97,7 @@ public class ZsMatcher extends Matcher {
 					fd[kk][ll] = Math.min(ins, Math.min(del, up));					
 				}
 		
+		workspace.popForestDist();
 		return dist[i][j];
 	}
 	
@@ -121,8 +134,16 @@ public class ZsMatcher extends Matcher {
 
 	@Override
 	public void match() {
-		align();
-		computeMappings();
+		workspace = WORKSPACES.get();
+		dist = workspace.dist(src.size(), dst.size());
+		try {
+			align();
+			computeMappings();
+		} finally {
+			if (workspace.retainedMemory() > MAX_RETAINED_MEMORY) WORKSPACES.remove();
+			dist = null;
+			workspace = null;
+		}
 		Iterator<Mapping> mIt = mappings.iterator();
 		while (mIt.hasNext()) {
 			Mapping m = mIt.next();
@@ -133,6 +154,55 @@ public class ZsMatcher extends Matcher {
 		}
 	}
 	
+	/**
+	 * Arrays of a thread, reused by its successive matchers. Each row only grows when needed, so that
+	 * matching trees of different shapes does not retain the product of their largest dimensions.
+	 * The forest distance arrays are stacked since the tree distances may be computed recursively.
+	 */
+	private static final class Workspace {
+		private double[][] dist = new double[0][];
+		private double[][][] forestDists = new double[4][][];
+		private int depth;
+
+		private double[][] dist(int rows, int cols) {
+			dist = reuse(dist, rows, cols);
+			for (int i = 0; i < rows; i++) Arrays.fill(dist[i], 0, cols, -1);
+			depth = 0;
+			return dist;
+		}
+
+		private double[][] pushForestDist(int rows, int cols) {
+			if (depth == forestDists.length) forestDists = Arrays.copyOf(forestDists, depth * 2);
+			double[][] fd = reuse(forestDists[depth], rows, cols);
+			forestDists[depth] = fd;
+			depth++;
+			return fd;
+		}
+
+		private void popForestDist() {
+			depth--;
+		}
+
+		private long retainedMemory() {
+			long memory = memory(dist);
+			for (double[][] fd: forestDists) memory += memory(fd);
+			return memory;
+		}
+
+		private static double[][] reuse(double[][] a, int rows, int cols) {
+			a = (a == null) ? new double[rows][] : (a.length < rows) ? Arrays.copyOf(a, rows) : a;
+			for (int i = 0; i < rows; i++) if (a[i] == null || a[i].length < cols) a[i] = new double[cols];
+			return a;
+		}
+
+		private static long memory(double[][] a) {
+			if (a == null) return 0L;
+			long memory = 16L + 4L * a.length;
+			for (double[] row: a) if (row != null) memory += 16L + 8L * row.length;
+			return memory;
+		}
+	}
+
 	private final class TreeInfo {
 		private Tree root;
 		private Tree[] nodes;
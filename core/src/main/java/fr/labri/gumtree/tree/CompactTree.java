@@ -0,0 +1,351 @@
+package fr.labri.gumtree.tree;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable array-backed representation of a tree. Every attribute of the nodes is stored
+ * in a parallel primitive array indexed by the post-order id of the node, so a node costs a
+ * few dozen bytes instead of a full {@link Tree} object with its children list and position arrays.
+ * In post-order the descendants of a node <code>i</code> are exactly the ids
+ * <code>[i - size(i) + 1, i - 1]</code>, which makes subtree traversals sequential scans.
+ * Nodes can be browsed through the id based accessors or through the lightweight {@link Node} view.
+ */
+public final class CompactTree {
+
+	public static final int NO_NODE = -1;
+
+	private final int size;
+
+	// Begin node attributes
+	private final int[] types;
+	private final int[] labels;
+	private final int[] typeLabels;
+	// End node attributes
+
+	// Begin hierarchy of the tree
+	private final int[] parents;
+	private final int[] firstChildren;
+	private final int[] nextSiblings;
+	// End hierarchy of the tree
+
+	// Begin metrics on the tree
+	private final int[] sizes;
+	private final int[] heights;
+	private final int[] depths;
+	private final long[] digests;
+	// End metrics
+
+	// Begin positions of the tree: absolute character index, then line and column start and end
+	private final int[] positions;
+	private final int[] lengths;
+	private final int[] lcPositions;
+	// End positions
+
+	/**
+	 * Build the compact representation of the given tree. The metrics of the tree
+	 * are copied as is, they need to be computed before using {@link Tree#refresh()}.
+	 * The given tree is left untouched.
+	 * @param tree a Tree.
+	 */
+	public CompactTree(Tree tree) {
+		List<Tree> trees = TreeUtils.postOrder(tree);
+		size = trees.size();
+		types = new int[size];
+		labels = new int[size];
+		typeLabels = new int[size];
+		parents = new int[size];
+		firstChildren = new int[size];
+		nextSiblings = new int[size];
+		sizes = new int[size];
+		heights = new int[size];
+		depths = new int[size];
+		digests = new long[size];
+		positions = new int[size];
+		lengths = new int[size];
+		lcPositions = new int[size * 4];
+
+		Map<Tree, Integer> ids = new IdentityHashMap<>(size);
+		for (int i = 0; i < size; i++) ids.put(trees.get(i), i);
+
+		for (int i = 0; i < size; i++) {
+			Tree t = trees.get(i);
+			types[i] = t.getType();
+			labels[i] = t.getLabelId();
+			typeLabels[i] = t.getTypeLabelId();
+			parents[i] = (t == tree) ? NO_NODE : ids.get(t.getParent());
+			firstChildren[i] = t.isLeaf() ? NO_NODE : ids.get(t.getChildren().get(0));
+			nextSiblings[i] = NO_NODE;
+			if (!t.isLeaf()) {
+				List<Tree> children = t.getChildren();
+				for (int c = 0; c < children.size() - 1; c++)
+					nextSiblings[ids.get(children.get(c))] = ids.get(children.get(c + 1));
+			}
+			sizes[i] = t.getSize();
+			heights[i] = t.getHeight();
+			depths[i] = t.getDepth();
+			digests[i] = t.getDigest();
+			positions[i] = t.getPos();
+			lengths[i] = t.getLength();
+			int[] start = t.getLcPosStart();
+			int[] end = t.getLcPosEnd();
+			lcPositions[4 * i] = (start == null) ? Tree.NO_VALUE : start[0];
+			lcPositions[4 * i + 1] = (start == null) ? Tree.NO_VALUE : start[1];
+			lcPositions[4 * i + 2] = (end == null) ? Tree.NO_VALUE : end[0];
+			lcPositions[4 * i + 3] = (end == null) ? Tree.NO_VALUE : end[1];
+		}
+	}
+
+	/**
+	 * Returns the number of nodes of the tree.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the root, which is always the last one in post-order.
+	 */
+	public int getRoot() {
+		return size - 1;
+	}
+
+	public int getType(int id) {
+		return types[id];
+	}
+
+	public String getLabel(int id) {
+		return SymbolTable.get(labels[id]);
+	}
+
+	/**
+	 * Returns the id of the label of the node in the {@link SymbolTable}.
+	 */
+	public int getLabelId(int id) {
+		return labels[id];
+	}
+
+	public String getTypeLabel(int id) {
+		return SymbolTable.get(typeLabels[id]);
+	}
+
+	public int getTypeLabelId(int id) {
+		return typeLabels[id];
+	}
+
+	public int getParent(int id) {
+		return parents[id];
+	}
+
+	public int getFirstChild(int id) {
+		return firstChildren[id];
+	}
+
+	public int getNextSibling(int id) {
+		return nextSiblings[id];
+	}
+
+	public int getChildrenCount(int id) {
+		int count = 0;
+		for (int c = firstChildren[id]; c != NO_NODE; c = nextSiblings[c]) count++;
+		return count;
+	}
+
+	public boolean isLeaf(int id) {
+		return firstChildren[id] == NO_NODE;
+	}
+
+	public boolean isRoot(int id) {
+		return parents[id] == NO_NODE;
+	}
+
+	public int getSize(int id) {
+		return sizes[id];
+	}
+
+	public int getHeight(int id) {
+		return heights[id];
+	}
+
+	public int getDepth(int id) {
+		return depths[id];
+	}
+
+	public long getDigest(int id) {
+		return digests[id];
+	}
+
+	public int getPos(int id) {
+		return positions[id];
+	}
+
+	public int getLength(int id) {
+		return lengths[id];
+	}
+
+	public int[] getLcPosStart(int id) {
+		if (lcPositions[4 * id] == Tree.NO_VALUE) return null;
+		return new int[] { lcPositions[4 * id], lcPositions[4 * id + 1] };
+	}
+
+	public int[] getLcPosEnd(int id) {
+		if (lcPositions[4 * id + 2] == Tree.NO_VALUE) return null;
+		return new int[] { lcPositions[4 * id + 2], lcPositions[4 * id + 3] };
+	}
+
+	/**
+	 * Returns the smallest id of the subtree rooted at the given node, i.e. its left-most leaf.
+	 * The subtree is made of all the ids between this one and the id of the node.
+	 */
+	public int getFirstDescendant(int id) {
+		return id - sizes[id] + 1;
+	}
+
+	/**
+	 * Indicate whether or not the first node is a descendant of the second one.
+	 */
+	public boolean isDescendant(int id, int ancestor) {
+		return id < ancestor && id >= getFirstDescendant(ancestor);
+	}
+
+	/**
+	 * Indicate if the two nodes have the same type and label.
+	 */
+	public boolean isSimilar(int id, int other) {
+		return types[id] == types[other] && labels[id] == labels[other];
+	}
+
+	/**
+	 * Returns a lightweight view on the given node.
+	 */
+	public Node getNode(int id) {
+		return new Node(id);
+	}
+
+	/**
+	 * Build a regular tree from this representation. The ids of the created trees are
+	 * their post-order ids in this representation, so mappings computed on the created
+	 * tree can be read back using {@link Tree#getId()}.
+	 * @return the root of the created tree.
+	 */
+	public Tree toTree() {
+		Tree[] trees = new Tree[size];
+		for (int i = 0; i < size; i++) {
+			Tree t = new Tree(types[i], getLabel(i), getTypeLabel(i));
+			t.setId(i);
+			t.setSize(sizes[i]);
+			t.setHeight(heights[i]);
+			t.setDepth(depths[i]);
+			t.setDigest(digests[i]);
+			t.setPos(positions[i]);
+			t.setLength(lengths[i]);
+			t.setLcPosStart(getLcPosStart(i));
+			t.setLcPosEnd(getLcPosEnd(i));
+			for (int c = firstChildren[i]; c != NO_NODE; c = nextSiblings[c]) t.addChild(trees[c]);
+			trees[i] = t;
+		}
+		return trees[getRoot()];
+	}
+
+	/**
+	 * Lightweight view on a node of a compact tree. It only stores the id of the node,
+	 * every attribute is read from the arrays of the tree.
+	 */
+	public final class Node {
+
+		private final int id;
+
+		private Node(int id) {
+			this.id = id;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public int getType() {
+			return types[id];
+		}
+
+		public String getLabel() {
+			return CompactTree.this.getLabel(id);
+		}
+
+		public String getTypeLabel() {
+			return CompactTree.this.getTypeLabel(id);
+		}
+
+		public Node getParent() {
+			return isRoot() ? null : new Node(parents[id]);
+		}
+
+		public List<Node> getChildren() {
+			List<Node> children = new ArrayList<>();
+			for (int c = firstChildren[id]; c != NO_NODE; c = nextSiblings[c]) children.add(new Node(c));
+			return children;
+		}
+
+		public boolean isLeaf() {
+			return CompactTree.this.isLeaf(id);
+		}
+
+		public boolean isRoot() {
+			return CompactTree.this.isRoot(id);
+		}
+
+		public int getSize() {
+			return sizes[id];
+		}
+
+		public int getHeight() {
+			return heights[id];
+		}
+
+		public int getDepth() {
+			return depths[id];
+		}
+
+		public long getDigest() {
+			return digests[id];
+		}
+
+		public int getPos() {
+			return positions[id];
+		}
+
+		public int getLength() {
+			return lengths[id];
+		}
+
+		public boolean isSimilar(Node n) {
+			return CompactTree.this.isSimilar(id, n.id);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Node)) return false;
+			Node n = (Node) o;
+			return n.id == id && n.getTree() == getTree();
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		private CompactTree getTree() {
+			return CompactTree.this;
+		}
+
+		@Override
+		public String toString() {
+			String label = getLabel();
+			if (label != null && !"".equals(label)) return getTypeLabel() + ": " + label;
+			else return getTypeLabel();
+		}
+
+	}
+
+}
@@ -2,17 +2,33 @@ package fr.labri.gumtree.tree;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public abstract class DigestGenerator {
 
-	public abstract void computeDigest(Tree tree);
+	/**
+	 * Compute the digest of every node of the tree.
+	 */
+	public void computeDigest(Tree tree) {
+		for (Tree t: TreeUtils.postOrder(tree)) t.setDigest(digest(t));
+	}
+
+	/**
+	 * Returns the digest of the given node. The digests and sizes of its children
+	 * are already computed when this method is called.
+	 */
+	public abstract long digest(Tree t);
 
 	public static int byteArrayToInt(byte[] b) {
 		return   b[3] & 0xFF | (b[2] & 0xFF) << 8 | (b[1] & 0xFF) << 16 | (b[0] & 0xFF) << 24;
 	}
 
+	public static long byteArrayToLong(byte[] b) {
+		long l = 0;
+		for (int i = 0; i < 8; i++) l = (l << 8) | (b[i] & 0xFF);
+		return l;
+	}
+
 	public static int fpow(int a, int b){
 		int result = 1;
 		while (b > 0) {
@@ -23,6 +39,34 @@ public abstract class DigestGenerator {
 		return result;
 	}
 
+	public static long fpow(long a, int b){
+		long result = 1;
+		while (b > 0) {
+			if ((b&1) != 0) result *= a;
+			b >>= 1;
+			a *= a;
+		}
+		return result;
+	}
+
+	/**
+	 * Scrambles the bits of the given value, using the finalizer of SplitMix64.
+	 */
+	public static long mix64(long h) {
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * Returns a digest of the type and label of the given tree, computed from the 64 bits hash
+	 * of the label cached by the {@link SymbolTable} so no string is involved.
+	 */
+	public static int symbolDigest(Tree t) {
+		long h = RollingLongHashGenerator.nodeDigest(t);
+		return (int) (h ^ (h >>> 32));
+	}
+
 	public static int md5digest(String s) {
 		try {
 			MessageDigest md = MessageDigest.getInstance("MD5");
@@ -34,90 +78,146 @@ public abstract class DigestGenerator {
 		return Tree.NO_VALUE;
 	}
 
+	/**
+	 * Returns the first 64 bits of the MD5 digest of the given string.
+	 */
+	public static long md5digest64(String s) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] digest = md.digest(s.getBytes());
+			return byteArrayToLong(digest);
+		} catch (NoSuchAlgorithmException e) {
+			e.printStackTrace();
+		}
+		return Tree.NO_VALUE;
+	}
+
 	public static class StdHashGenerator extends DigestGenerator {
 		@Override
-		public void computeDigest(Tree tree) {
-			for (Tree t: tree.getTrees()) t.setDigest(t.toDigestTreeString().hashCode());
+		public long digest(Tree t) {
+			return t.toDigestTreeString().hashCode();
 		}
 	}
 
 	public static class Md5HashGenerator extends DigestGenerator {
 		@Override
-		public void computeDigest(Tree tree) {
-			for (Tree t: tree.getTrees()) t.setDigest(md5digest(t.toDigestTreeString()));
+		public long digest(Tree t) {
+			return md5digest64(t.toDigestTreeString());
 		}
 	}
 	
 	public static class RollingStdHashGenerator extends DigestGenerator {
-		private final static int B = 33;
+		private final static long B = 33;
 
 		@Override
-		public void computeDigest(Tree tree) {
-			for(Tree t: TreeUtils.postOrder(tree)) {
-				if (t.isLeaf()) t.setDigest(t.toDigestString().hashCode());
-				else {
-					int digest = 0;
-					int n = t.getChildren().size();
-					for (int i = 0; i < n; i ++) {
-						Tree child = t.getChildren().get(i);
-						digest = B * digest + t.getChildren().get(i).getDigest() * (int) fpow(B, child.getSize());
-					}
-					digest = B * digest + t.toDigestString().hashCode();
-					t.setDigest(digest);
-				}
+		public long digest(Tree t) {
+			if (t.isLeaf()) return symbolDigest(t);
+			long digest = 0;
+			int n = t.getChildren().size();
+			for (int i = 0; i < n; i ++) {
+				Tree child = t.getChildren().get(i);
+				digest = B * digest + child.getDigest() * fpow(B, child.getSize());
 			}
+			return B * digest + symbolDigest(t);
 		}
 	}
 
 	public static class RollingMd5HashGenerator extends DigestGenerator {
-		private final static int B = 33;
+		private final static long B = 33;
 
 		@Override
-		public void computeDigest(Tree tree) {
-			for(Tree t: TreeUtils.postOrder(tree)) {
-				if (t.isLeaf()) t.setDigest(md5digest(t.toDigestString()));
-				else {
-					int digest = 0;
-					int n = t.getChildren().size();
-					for (int i = 0; i < n; i ++) {
-						Tree child = t.getChildren().get(i);
-						digest = B * digest + t.getChildren().get(i).getDigest() * (int) fpow(B, child.getSize());
-					}
-					digest = B * digest + md5digest(t.toDigestString());
-					t.setDigest(digest);
-				}
+		public long digest(Tree t) {
+			if (t.isLeaf()) return md5digest64(t.toDigestString());
+			long digest = 0;
+			int n = t.getChildren().size();
+			for (int i = 0; i < n; i ++) {
+				Tree child = t.getChildren().get(i);
+				digest = B * digest + child.getDigest() * fpow(B, child.getSize());
 			}
+			return B * digest + md5digest64(t.toDigestString());
 		}
 	}
 	
+	/**
+	 * Rolling 64 bits hash computed from the cached hash codes of the labels. The digest of a node
+	 * is a mix of its label hash code and type, so no string is built and no message digest is involved,
+	 * and the powers of the base are precomputed and shared by all the instances.
+	 */
+	public static class RollingLongHashGenerator extends DigestGenerator {
+		private final static long B = 0x100000001B3L;
+
+		private static volatile long[] powers = { 1L };
+
+		@Override
+		public long digest(Tree t) {
+			long digest = 0;
+			int n = t.getChildren().size();
+			for (int i = 0; i < n; i ++) {
+				Tree child = t.getChildren().get(i);
+				digest = B * digest + child.getDigest() * pow(child.getSize());
+			}
+			return B * digest + nodeDigest(t);
+		}
+
+		/**
+		 * Returns a 64 bits digest of the label and type of the node.
+		 */
+		public static long nodeDigest(Tree t) {
+			return mix64(SymbolTable.hash(t.getLabelId()) + t.getType() * 0x9E3779B97F4A7C15L);
+		}
+
+		private static long pow(int exponent) {
+			long[] current = powers;
+			if (exponent < current.length) return current[exponent];
+			int length = Math.max(exponent + 1, current.length * 2);
+			long[] grown = Arrays.copyOf(current, length);
+			for (int i = current.length; i < length; i++) grown[i] = grown[i - 1] * B;
+			powers = grown;
+			return grown[exponent];
+		}
+	}
+
+	/**
+	 * Rolling hash where the digest of a node is a pseudo-random value drawn for its label and type.
+	 * The values are derived from a seed instead of being stored in a table, so two generators with
+	 * the same seed produce the same digests in every run, and a generator can be shared by several threads.
+	 */
 	public static class RollingRdmHashGenerator extends DigestGenerator {
-		private final static int B = 33;
-		
-		private final static Map<String, Integer> digests = new HashMap<>();
+		private final static long B = 33;
+
+		public final static long DEFAULT_SEED = 0x5DEECE66DL;
+
+		private final long seed;
+
+		public RollingRdmHashGenerator() {
+			this(DEFAULT_SEED);
+		}
+
+		public RollingRdmHashGenerator(long seed) {
+			this.seed = seed;
+		}
 
 		@Override
-		public void computeDigest(Tree tree) {
-			for(Tree t: TreeUtils.postOrder(tree)) {
-				if (t.isLeaf()) t.setDigest(rdmDigest(t.toDigestString()));
-				else {
-					int digest = 0;
-					int n = t.getChildren().size();
-					for (int i = 0; i < n; i ++) {
-						Tree child = t.getChildren().get(i);
-						digest = B * digest + t.getChildren().get(i).getDigest() * (int) fpow(B, child.getSize());
-					}
-					digest = B * digest + rdmDigest(t.toDigestString());
-					t.setDigest(digest);
-				}
+		public long digest(Tree t) {
+			if (t.isLeaf()) return rdmDigest(t);
+			long digest = 0;
+			int n = t.getChildren().size();
+			for (int i = 0; i < n; i ++) {
+				Tree child = t.getChildren().get(i);
+				digest = B * digest + child.getDigest() * fpow(B, child.getSize());
 			}
+			return B * digest + rdmDigest(t);
 		}
 		
-		public static int rdmDigest(String s) {
-			if (!digests.containsKey(s)) {
-				int digest = (int) (Math.random() * (Integer.MAX_VALUE - 1));
-				digests.put(s, digest);
-				return digest;
-			} else return digests.get(s);
+		/**
+		 * Returns the random value associated to the label and type of the node, between 0 and Integer.MAX_VALUE.
+		 */
+		public int rdmDigest(Tree t) {
+			String label = t.getLabel();
+			long h = 0xCBF29CE484222325L ^ seed;
+			if (label != null) for (int i = 0; i < label.length(); i++) h = (h ^ label.charAt(i)) * 0x100000001B3L;
+			h = (h ^ t.getType()) * 0x100000001B3L;
+			return (int) (mix64(h) & Integer.MAX_VALUE);
 		}
 		
 	}
@@ -0,0 +1,107 @@
+package fr.labri.gumtree.tree;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Global table interning the labels and type labels of the trees into small int ids.
+ * Two strings are equal if and only if their ids are equal, and every distinct string is stored
+ * only once whatever the number of trees using it. The table is shared by all the trees and
+ * can be used concurrently.
+ */
+public final class SymbolTable {
+
+	public static final int NO_SYMBOL = -1;
+
+	private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+	private static final Object lock = new Object();
+
+	private static volatile String[] symbols = new String[1024];
+
+	private static volatile long[] hashes = new long[1024];
+
+	private static int count = 0;
+
+	static {
+		intern(Tree.NO_LABEL);
+	}
+
+	private SymbolTable() {
+	}
+
+	/**
+	 * Returns the id of the given string, adding it to the table if needed.
+	 * @param symbol a String, possibly null.
+	 * @return the id of the string, or {@link #NO_SYMBOL} for null.
+	 */
+	public static int intern(String symbol) {
+		if (symbol == null) return NO_SYMBOL;
+		Integer id = ids.get(symbol);
+		if (id != null) return id;
+		synchronized (lock) {
+			id = ids.get(symbol);
+			if (id != null) return id;
+			String[] current = symbols;
+			long[] currentHashes = hashes;
+			if (count == current.length) {
+				current = Arrays.copyOf(current, count * 2);
+				currentHashes = Arrays.copyOf(currentHashes, count * 2);
+			}
+			current[count] = symbol;
+			currentHashes[count] = hash(symbol);
+			hashes = currentHashes;
+			symbols = current;
+			ids.put(symbol, count);
+			return count++;
+		}
+	}
+
+	/**
+	 * Returns the string having the given id.
+	 * @param id an id returned by {@link #intern(String)}.
+	 * @return the string, or null for {@link #NO_SYMBOL}.
+	 */
+	public static String get(int id) {
+		if (id == NO_SYMBOL) return null;
+		return symbols[id];
+	}
+
+	/**
+	 * Returns the 64 bits hash of the string having the given id, computed once when the string
+	 * is interned. Unlike the id, which depends on the order in which the strings are interned,
+	 * it is the same in every run.
+	 * @param id an id returned by {@link #intern(String)}.
+	 * @return the hash of the string, or 0 for {@link #NO_SYMBOL}.
+	 */
+	public static long hash(int id) {
+		if (id == NO_SYMBOL) return 0L;
+		return hashes[id];
+	}
+
+	/**
+	 * Returns the 64 bits FNV-1a hash of the chars of the given string. Unlike
+	 * {@link String#hashCode()}, the strings colliding on 32 bits such as "Aa" and "BB" get
+	 * different hashes.
+	 */
+	public static long hash(String symbol) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < symbol.length(); i++) {
+			char c = symbol.charAt(i);
+			h = (h ^ (c & 0xFF)) * 0x100000001B3L;
+			h = (h ^ (c >>> 8)) * 0x100000001B3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Returns the number of strings stored in the table.
+	 */
+	public static int size() {
+		synchronized (lock) {
+			return count;
+		}
+	}
+
+}
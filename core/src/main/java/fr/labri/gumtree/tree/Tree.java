@@ -1,7 +1,10 @@
 package fr.labri.gumtree.tree;
 
 import java.io.InvalidClassException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
@@ -23,8 +26,8 @@ public class Tree {
 	// Type of the token
 	private int type;
 
-	// Label of the token
-	private String label;
+	// Id of the label of the token in the symbol table
+	private int label;
 
 	// Begin hierarchy of the tree
 	private Tree parent;
@@ -35,9 +38,14 @@ public class Tree {
 	private int height;
 	private int size;
 	private int depth;
-	private int digest;
+	private long digest;
 	// End metrics
 
+	// Begin pre-order index, shared by all the nodes of the refreshed tree
+	private Tree[] preOrderTrees;
+	private int preOrderIndex;
+	// End pre-order index
+
 	// Begin position of the tree in terms of absolute character index
 	private int pos;
 	private int length;
@@ -48,13 +56,8 @@ public class Tree {
 	private int[] lcPosEnd;
 	// End position
 
-	// Useless it should be implemented outside
-	//TODO remove the matched attribute
-	private boolean matched;
-
-	// Takes a lot of useless memory, should not be implemented this way.
-	//TODO fix implementation of type label.
-	private String typeLabel;
+	// Id of the type label in the symbol table
+	private int typeLabel;
 
 	// Needed for Rted :(
 	private Object tmpData;
@@ -72,8 +75,8 @@ public class Tree {
 
 	public Tree(int type, String label, String typeLabel) {
 		this.type = type;
-		this.label = (label == null ) ? "" : label;
-		this.typeLabel = typeLabel;
+		this.label = SymbolTable.intern((label == null ) ? NO_LABEL : label);
+		this.typeLabel = SymbolTable.intern(typeLabel);
 		this.children = new ArrayList<Tree>();
 		this.id = NO_ID;
 		this.depth = NO_VALUE;
@@ -83,7 +86,6 @@ public class Tree {
 		this.size = NO_VALUE;
 		this.pos = NO_VALUE;
 		this.length = NO_VALUE;
-		this.matched = false;
 	}
 
 	/**
@@ -95,24 +97,15 @@ public class Tree {
 		t.setParent(this);
 	}
 
-	/**
-	 * Indicate whether or not all the descendants of the trees are already mapped.
-	 * @return
-	 */
-	public boolean areDescendantsMatched() {
-		for (Tree c: getDescendants()) if (!c.isMatched()) return false;
-		return true;
-	}
-
 	/**
 	 * Make a shallow copy of the tree.
 	 * @return a shallow copy of the tree, including type, id, label, typeLabel, position and length.
 	 */
 	public Tree copy() {
-		Tree t = new Tree(this.getType(), this.getLabel());
-		t.setTypeLabel(this.getTypeLabel());
+		Tree t = new Tree(this.getType());
+		t.label = this.label;
+		t.typeLabel = this.typeLabel;
 		t.setId(this.getId());
-		t.setMatched(this.isMatched());
 		t.setPos(this.getPos());
 		t.setLength(this.getLength());
 		t.setHeight(this.getHeight());
@@ -129,7 +122,20 @@ public class Tree {
 	 */
 	public Tree deepCopy() {
 		Tree copy = copy();
-		for (Tree child: getChildren()) copy.addChild(child.deepCopy());
+		Deque<Tree> origs = new ArrayDeque<>();
+		Deque<Tree> copies = new ArrayDeque<>();
+		origs.push(this);
+		copies.push(copy);
+		while (!origs.isEmpty()) {
+			Tree orig = origs.pop();
+			Tree parent = copies.pop();
+			for (Tree child: orig.getChildren()) {
+				Tree c = child.copy();
+				parent.addChild(c);
+				origs.push(child);
+				copies.push(c);
+			}
+		}
 		return copy;
 	}
 
@@ -176,7 +182,7 @@ public class Tree {
 		return trees;
 	}
 
-	public int getDigest() {
+	public long getDigest() {
 		return digest;
 	}
 
@@ -193,6 +199,15 @@ public class Tree {
 	}
 
 	public String getLabel() {
+		return SymbolTable.get(label);
+	}
+
+	/**
+	 * Returns the id of the label in the {@link SymbolTable}. Two trees have the same
+	 * label if and only if they have the same label id.
+	 * @return
+	 */
+	public int getLabelId() {
 		return label;
 	}
 
@@ -236,7 +251,31 @@ public class Tree {
 		return pos;
 	}
 
+	/**
+	 * Returns the position of the tree in the pre-order of the tree on which
+	 * {@link #refresh()} has been called last.
+	 * @return
+	 */
+	public int getPreOrderIndex() {
+		if (preOrderTrees == null) TreeUtils.computePreOrderIndex(this);
+		return preOrderIndex;
+	}
+
+	/**
+	 * Returns the i-th tree of the subtree rooted at this tree, using a pre-order: the tree itself
+	 * for 0, and its descendants from 1 to {@link #getSize()} - 1. Iterating over the descendants
+	 * this way does not allocate anything. It relies on the pre-order index computed
+	 * by {@link #refresh()}, which is invalidated by any modification of the tree.
+	 * @param i
+	 * @return
+	 */
+	public Tree getPreOrderTree(int i) {
+		if (preOrderTrees == null) TreeUtils.computePreOrderIndex(this);
+		return preOrderTrees[preOrderIndex + i];
+	}
+
 	public String getShortLabel() {
+		String label = getLabel();
 		return label.substring(0, Math.min(50, label.length()));
 	}
 
@@ -261,6 +300,14 @@ public class Tree {
 	}
 
 	public String getTypeLabel() {
+		return SymbolTable.get(typeLabel);
+	}
+
+	/**
+	 * Returns the id of the type label in the {@link SymbolTable}.
+	 * @return
+	 */
+	public int getTypeLabelId() {
 		return typeLabel;
 	}
 
@@ -277,16 +324,54 @@ public class Tree {
 	}
 
 	/**
-	 * Indicates if the two trees are isomorphics.
+	 * Indicates if the two trees are isomorphics. The digests are compared first,
+	 * and only trees with equal digests are compared node by node.
 	 * @param tree
 	 * @return
 	 */
 	public boolean isClone(Tree tree) {
 		if (this.getDigest() != tree.getDigest()) return false;
-		else {
-			boolean res = (this.toDigestTreeString().equals(tree.toDigestTreeString()));
-			return res;
+		else return isIsomorphic(tree);
+	}
+
+	/**
+	 * Indicates if the two trees have the same shape and if their nodes have the same
+	 * types and labels. Both trees are browsed in lock-step and the comparison stops
+	 * at the first difference.
+	 * @param tree
+	 * @return
+	 */
+	public boolean isIsomorphic(Tree tree) {
+		Deque<Tree> lefts = new ArrayDeque<>();
+		Deque<Tree> rights = new ArrayDeque<>();
+		lefts.push(this);
+		rights.push(tree);
+		while (!lefts.isEmpty()) {
+			Tree left = lefts.pop();
+			Tree right = rights.pop();
+			if (!left.isSimilar(right)) return false;
+			List<Tree> lChildren = left.getChildren();
+			List<Tree> rChildren = right.getChildren();
+			if (lChildren.size() != rChildren.size()) return false;
+			for (int i = lChildren.size() - 1; i >= 0; i--) {
+				lefts.push(lChildren.get(i));
+				rights.push(rChildren.get(i));
+			}
 		}
+		return true;
+	}
+
+	/**
+	 * Indicate whether or not the tree is a descendant of the given tree. When both
+	 * trees share the same pre-order index it is only an interval check.
+	 * @param t
+	 * @return
+	 */
+	public boolean isDescendantOf(Tree t) {
+		if (preOrderTrees != null && preOrderTrees == t.preOrderTrees)
+			return preOrderIndex > t.preOrderIndex && preOrderIndex < t.preOrderIndex + t.size;
+		for (Tree p = parent; p != null; p = p.parent) if (p == t) return true;
+		return false;
 	}
 
 	/**
@@ -306,19 +391,6 @@ public class Tree {
 		return getChildren().size() == 0;
 	}
 
-	/**
-	 * Indicate whether or not the tree is mappable to the given tree.
-	 * @param t
-	 * @return true if both trees are not mapped and if the trees have the same type, false either.
-	 */
-	public boolean isMatchable(Tree t) {
-		return this.isCompatible(t) && !(this.isMatched()  || t.isMatched());
-	}
-
-	public boolean isMatched() {
-		return matched;
-	}
-
 	public boolean isRoot() {
 		return parent == null;
 	}
@@ -330,7 +402,7 @@ public class Tree {
 	 */
 	public boolean isSimilar(Tree t) {
 		if (!this.isCompatible(t)) return false;
-		else if (!this.getLabel().equals(t.getLabel())) return false;
+		else if (this.getLabelId() != t.getLabelId()) return false;
 		return true;
 	}
 
@@ -342,10 +414,30 @@ public class Tree {
 	}
 
 	public void refresh() {
-		TreeUtils.computeSize(this);
-		TreeUtils.computeDepth(this);
-		TreeUtils.computeHeight(this);
-		TreeUtils.computeDigest(this);
+		TreeUtils.computeMetrics(this);
+	}
+
+	/**
+	 * Update the size, height and digest of this tree and of its ancestors, after children have been
+	 * added to or removed from this tree. Only the path from this tree to the root is visited.
+	 * @see TreeUtils#refreshAncestors(java.util.Collection)
+	 */
+	public void refreshAncestors() {
+		TreeUtils.refreshAncestors(Collections.singletonList(this));
+	}
+
+	/**
+	 * Same as {@link #refreshAncestors()}, for a tree whose digests have been computed with the given generator.
+	 */
+	public void refreshAncestors(DigestGenerator g) {
+		TreeUtils.refreshAncestors(Collections.singletonList(this), g);
+	}
+
+	/**
+	 * Update the depth of this tree and of its descendants, after it has been moved to another parent.
+	 */
+	public void refreshDepth() {
+		TreeUtils.refreshDepth(this);
 	}
 
 	public void setChildren(List<Tree> children) {
@@ -357,7 +449,7 @@ public class Tree {
 		this.depth = depth;
 	}
 
-	public void setDigest(int digest) {
+	public void setDigest(long digest) {
 		this.digest = digest;
 	}
 
@@ -370,7 +462,7 @@ public class Tree {
 	}
 
 	public void setLabel(String label) {
-		this.label = label;
+		this.label = SymbolTable.intern(label);
 	}
 
 	public void setLcPosEnd(int[] lcPosEnd) {
@@ -385,10 +477,6 @@ public class Tree {
 		this.length = length;
 	}
 
-	public void setMatched(boolean matched) {
-		this.matched = matched;
-	}
-
 	public void setParent(Tree parent) {
 		this.parent = parent;
 	}
@@ -399,6 +487,11 @@ public class Tree {
 		if (this.parent != null) parent.getChildren().add(this);
 	}
 
+	void setPreOrderIndex(Tree[] preOrderTrees, int preOrderIndex) {
+		this.preOrderTrees = preOrderTrees;
+		this.preOrderIndex = preOrderIndex;
+	}
+
 	public void setPos(int pos) {
 		this.pos = pos;
 	}
@@ -416,11 +509,11 @@ public class Tree {
 	}
 
 	public void setTypeLabel(String typeLabel) {
-		this.typeLabel = typeLabel;
+		this.typeLabel = SymbolTable.intern(typeLabel);
 	}
 
 	public String toCompleteString() {
-		return label + "@" + typeLabel + ":" + type + " [id=" + id + ", depth:" + depth + ", maxdepth=" + height + ", digest=" + digest + ", pos=" + pos + ", length=" + length + "]";
+		return getLabel() + "@" + getTypeLabel() + ":" + type + " [id=" + id + ", depth:" + depth + ", maxdepth=" + height + ", digest=" + digest + ", pos=" + pos + ", length=" + length + "]";
 	}
 
 	public String toCompleteTreeString() {
@@ -440,11 +533,19 @@ public class Tree {
 	}
 
 	public String toDigestTreeString() {
-		StringBuffer b = new StringBuffer();
-		b.append(OPEN_SYMBOL);
-		b.append(this.toDigestString());
-		for (Tree c: this.getChildren()) b.append(c.toDigestTreeString());
-		b.append(CLOSE_SYMBOL);
+		final StringBuilder b = new StringBuilder();
+		TreeUtils.visitTree(this, new TreeVisitor() {
+			@Override
+			public void startTree(Tree t) {
+				b.append(OPEN_SYMBOL);
+				b.append(t.toDigestString());
+			}
+
+			@Override
+			public void endTree(Tree t) {
+				b.append(CLOSE_SYMBOL);
+			}
+		});
 		return b.toString();
 	}
 
@@ -1,15 +1,31 @@
 package fr.labri.gumtree.tree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import fr.labri.gumtree.matchers.Mapping;
 
 
 public final class TreeUtils {
 
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 100000;
+
+	private static final int PARALLEL_GRAIN = 4096;
+
+	private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	private static ForkJoinPool pool;
+
 	private TreeUtils() {
 	}
 
@@ -33,8 +49,11 @@ public final class TreeUtils {
 	 * @param tree a Tree
 	 */
 	public static void computeDigest(Tree tree) {
-		DigestGenerator.RollingMd5HashGenerator g = new DigestGenerator.RollingMd5HashGenerator();
-		g.computeDigest(tree);
+		defaultDigestGenerator().computeDigest(tree);
+	}
+
+	private static DigestGenerator defaultDigestGenerator() {
+		return new DigestGenerator.RollingLongHashGenerator();
 	}
 
 	public static void computeDigest(Tree tree, DigestGenerator g) {
@@ -75,6 +94,286 @@ public final class TreeUtils {
 		}
 	}
 
+	/**
+	 * Compute the pre-order index of every node of the tree. The index is set directly
+	 * on the nodes and is then accessible using {@link Tree#getPreOrderIndex()} and
+	 * {@link Tree#getPreOrderTree(int)}. It relies on the sizes of the nodes.
+	 * @param tree a Tree.
+	 */
+	public static void computePreOrderIndex(Tree tree) {
+		List<Tree> trees = preOrder(tree);
+		Tree[] index = trees.toArray(new Tree[trees.size()]);
+		for (int i = 0; i < index.length; i++) index[i].setPreOrderIndex(index, i);
+	}
+
+	/**
+	 * Compute the size, depth, height, digest and pre-order index of every node of the tree
+	 * in a single iterative traversal followed by a sweep of the pre-order, without building
+	 * any list of nodes. It is equivalent to calling {@link #computeSize(Tree)},
+	 * {@link #computeDepth(Tree)}, {@link #computeHeight(Tree)}, {@link #computeDigest(Tree)}
+	 * and {@link #computePreOrderIndex(Tree)}. Trees having more nodes than the parallel
+	 * threshold have their heights and digests computed by several threads.
+	 * @param tree a Tree.
+	 * @see #setParallelThreshold(int)
+	 */
+	public static void computeMetrics(Tree tree) {
+		computeMetrics(tree, defaultDigestGenerator());
+	}
+
+	public static void computeMetrics(Tree tree, DigestGenerator g) {
+		MetricsVisitor v = new MetricsVisitor(tree);
+		visitTree(tree, v);
+		Tree[] preOrder = v.getPreOrder();
+		if (preOrder.length >= parallelThreshold) computeMetricsInParallel(preOrder, g);
+		else for (int i = preOrder.length - 1; i >= 0; i--) computeNodeMetrics(preOrder[i], g);
+		for (int i = 0; i < preOrder.length; i++) preOrder[i].setPreOrderIndex(preOrder, i);
+	}
+
+	/**
+	 * Returns the number of nodes above which the metrics are computed in parallel.
+	 */
+	public static int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Set the number of nodes above which {@link #computeMetrics(Tree)} computes
+	 * the heights and digests in parallel. Use Integer.MAX_VALUE to disable it.
+	 */
+	public static void setParallelThreshold(int threshold) {
+		parallelThreshold = threshold;
+	}
+
+	/**
+	 * Returns the common pool of the JVM when it exists (Java 8 and later), otherwise a pool shared
+	 * by all the computations, whose threads are daemons.
+	 */
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			try {
+				pool = (ForkJoinPool) ForkJoinPool.class.getMethod("commonPool").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				pool = new ForkJoinPool();
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Compute the depth, the pre-order and the size of the nodes.
+	 */
+	private static class MetricsVisitor implements TreeVisitor {
+
+		private Tree[] preOrder;
+
+		private int count;
+
+		private MetricsVisitor(Tree tree) {
+			this.preOrder = new Tree[Math.max(tree.getSize(), 1)];
+			tree.setDepth(tree.isRoot() ? 0 : tree.getParent().getDepth() + 1);
+		}
+
+		@Override
+		public void startTree(Tree t) {
+			if (count > 0) t.setDepth(t.getParent().getDepth() + 1);
+			if (count == preOrder.length) preOrder = Arrays.copyOf(preOrder, count * 2);
+			preOrder[count++] = t;
+		}
+
+		@Override
+		public void endTree(Tree t) {
+			List<Tree> children = t.getChildren();
+			int size = 1;
+			for (int i = 0; i < children.size(); i++) size += children.get(i).getSize();
+			t.setSize(size);
+		}
+
+		private Tree[] getPreOrder() {
+			if (count != preOrder.length) preOrder = Arrays.copyOf(preOrder, count);
+			return preOrder;
+		}
+
+	}
+
+	/**
+	 * Compute the heights and digests of the nodes in parallel. The pre-order is cut into
+	 * intervals of complete subtrees having at most PARALLEL_GRAIN nodes each, which are computed
+	 * by independent tasks. The larger nodes are computed afterwards by the calling thread,
+	 * in reverse pre-order, so no task waits for another one and deep trees do not nest tasks.
+	 */
+	private static void computeMetricsInParallel(Tree[] preOrder, DigestGenerator g) {
+		final List<RangeTask> tasks = new ArrayList<>();
+		int[] large = new int[16];
+		int nbLarge = 0;
+		int start = -1;
+		int i = 0;
+		while (i < preOrder.length) {
+			int size = preOrder[i].getSize();
+			if (size > PARALLEL_GRAIN) {
+				if (start != -1) tasks.add(new RangeTask(preOrder, start, i, g));
+				start = -1;
+				if (nbLarge == large.length) large = Arrays.copyOf(large, nbLarge * 2);
+				large[nbLarge++] = i++;
+			} else {
+				if (start == -1) start = i;
+				i += size;
+				if (i - start >= PARALLEL_GRAIN) {
+					tasks.add(new RangeTask(preOrder, start, i, g));
+					start = -1;
+				}
+			}
+		}
+		if (start != -1) tasks.add(new RangeTask(preOrder, start, i, g));
+
+		getPool().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		for (int k = nbLarge - 1; k >= 0; k--) computeNodeMetrics(preOrder[large[k]], g);
+	}
+
+	/**
+	 * Compute the heights and digests of an interval of the pre-order made of complete subtrees.
+	 */
+	private static class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Tree[] preOrder;
+
+		private final int from;
+
+		private final int to;
+
+		private final DigestGenerator generator;
+
+		private RangeTask(Tree[] preOrder, int from, int to, DigestGenerator generator) {
+			this.preOrder = preOrder;
+			this.from = from;
+			this.to = to;
+			this.generator = generator;
+		}
+
+		@Override
+		protected void compute() {
+			for (int i = to - 1; i >= from; i--) computeNodeMetrics(preOrder[i], generator);
+		}
+
+	}
+
+	/**
+	 * Compute the size, height and digest of a node from the metrics of its children.
+	 */
+	private static void computeNodeMetrics(Tree t, DigestGenerator g) {
+		List<Tree> children = t.getChildren();
+		int size = 1;
+		int height = 0;
+		for (int i = 0; i < children.size(); i++) {
+			Tree c = children.get(i);
+			size += c.getSize();
+			if (c.getHeight() + 1 > height) height = c.getHeight() + 1;
+		}
+		t.setSize(size);
+		t.setHeight(height);
+		t.setDigest(g.digest(t));
+	}
+
+	/**
+	 * Update the size, height and digest of the given trees and of all their ancestors, after
+	 * children have been added to or removed from the given trees. Each ancestor is updated once,
+	 * after all its updated descendants, and the other nodes are not visited. The depths of the
+	 * given trees must be valid. The pre-order index of the updated nodes is discarded, it is
+	 * computed again when needed.
+	 * @param trees the modified trees.
+	 */
+	public static void refreshAncestors(Collection<Tree> trees) {
+		refreshAncestors(trees, defaultDigestGenerator());
+	}
+
+	/**
+	 * Same as {@link #refreshAncestors(Collection)}, for a tree whose digests have been computed
+	 * with the given generator.
+	 * @param trees the modified trees.
+	 * @param g the generator used to compute the digests of the tree.
+	 */
+	public static void refreshAncestors(Collection<Tree> trees, DigestGenerator g) {
+		if (trees.size() == 1) {
+			for (Tree t = trees.iterator().next(); t != null; t = t.getParent()) {
+				computeNodeMetrics(t, g);
+				t.setPreOrderIndex(null, 0);
+			}
+			return;
+		}
+
+		Set<Tree> visited = Collections.newSetFromMap(new IdentityHashMap<Tree, Boolean>());
+		List<Tree> ancestors = new ArrayList<>();
+		for (Tree t: trees)
+			for (Tree a = t; a != null && visited.add(a); a = a.getParent()) ancestors.add(a);
+		Collections.sort(ancestors, new Comparator<Tree>() {
+			@Override
+			public int compare(Tree t1, Tree t2) {
+				return Integer.compare(t2.getDepth(), t1.getDepth());
+			}
+		});
+		for (Tree t: ancestors) {
+			computeNodeMetrics(t, g);
+			t.setPreOrderIndex(null, 0);
+		}
+	}
+
+	/**
+	 * Compute the depth of every node of the tree from the depth of its parent,
+	 * after the tree has been moved.
+	 * @param tree a Tree.
+	 */
+	public static void refreshDepth(Tree tree) {
+		visitTree(tree, new TreeVisitor() {
+			@Override
+			public void startTree(Tree t) {
+				t.setDepth(t.isRoot() ? 0 : t.getParent().getDepth() + 1);
+			}
+
+			@Override
+			public void endTree(Tree t) {
+			}
+		});
+	}
+
+	/**
+	 * Perform a depth-first traversal of the tree, calling the visitor when entering and leaving each node.
+	 * The traversal uses an explicit stack so it does not depend on the depth of the tree.
+	 * @param tree a Tree.
+	 * @param visitor the callbacks.
+	 */
+	public static void visitTree(Tree tree, TreeVisitor visitor) {
+		Tree[] stack = new Tree[32];
+		int[] nextChild = new int[32];
+		int top = 0;
+		stack[0] = tree;
+		visitor.startTree(tree);
+		while (top >= 0) {
+			Tree t = stack[top];
+			List<Tree> children = t.getChildren();
+			if (nextChild[top] < children.size()) {
+				Tree c = children.get(nextChild[top]++);
+				visitor.startTree(c);
+				if (++top == stack.length) {
+					stack = Arrays.copyOf(stack, top * 2);
+					nextChild = Arrays.copyOf(nextChild, top * 2);
+				}
+				stack[top] = c;
+				nextChild[top] = 0;
+			} else {
+				visitor.endTree(t);
+				stack[top--] = null;
+			}
+		}
+	}
+
 	public static void order(Tree tree) {
 		order(tree, OrderKind.POST_ORDER);
 	}
@@ -98,14 +397,18 @@ public final class TreeUtils {
 	 * @return
 	 */
 	public static List<Tree> preOrder(Tree tree) {
-		List<Tree> trees = new ArrayList<>();
-		preOrder(tree, trees);
-		return trees;
-	}
+		final List<Tree> trees = new ArrayList<>(Math.max(tree.getSize(), 1));
+		visitTree(tree, new TreeVisitor() {
+			@Override
+			public void startTree(Tree t) {
+				trees.add(t);
+			}
 
-	private static void preOrder(Tree tree, List<Tree> trees) {
-		trees.add(tree);
-		if (!tree.isLeaf()) for (Tree c: tree.getChildren()) preOrder(c, trees);
+			@Override
+			public void endTree(Tree t) {
+			}
+		});
+		return trees;
 	}
 
 	public static void preOrderNumbering(Tree tree) {
@@ -119,14 +422,9 @@ public final class TreeUtils {
 	 * @return
 	 */
 	public static List<Tree> bfsOrder(Tree tree) {
-		List<Tree> trees = new ArrayList<>();
-		List<Tree> currents = new ArrayList<>();
-		currents.add(tree);
-		while (currents.size() > 0) {
-			Tree c = currents.remove(0);
-			trees.add(c);
-			currents.addAll(c.getChildren());
-		}
+		List<Tree> trees = new ArrayList<>(Math.max(tree.getSize(), 1));
+		trees.add(tree);
+		for (int i = 0; i < trees.size(); i++) trees.addAll(trees.get(i).getChildren());
 		return trees;
 	}
 
@@ -141,14 +439,18 @@ public final class TreeUtils {
 	 * @return
 	 */
 	public static List<Tree> postOrder(Tree tree) {
-		List<Tree> trees = new ArrayList<>();
-		postOrder(tree, trees);
-		return trees;
-	}
+		final List<Tree> trees = new ArrayList<>(Math.max(tree.getSize(), 1));
+		visitTree(tree, new TreeVisitor() {
+			@Override
+			public void startTree(Tree t) {
+			}
 
-	private static void postOrder(Tree tree, List<Tree> trees) {
-		if (!tree.isLeaf()) for (Tree c: tree.getChildren()) postOrder(c, trees);
-		trees.add(tree);
+			@Override
+			public void endTree(Tree t) {
+				trees.add(t);
+			}
+		});
+		return trees;
 	}
 
 	public static void postOrderNumbering(Tree tree) {
@@ -156,38 +458,59 @@ public final class TreeUtils {
 		for (int i = 0; i < trees.size(); i++) trees.get(i).setId(i);
 	}
 
-	public static void removeMapped(Collection<? extends Mapping> mappings) {
+	/**
+	 * Remove the mappings having a matched source or destination tree.
+	 * @param srcMatched the ids of the matched source trees.
+	 * @param dstMatched the ids of the matched destination trees.
+	 */
+	public static void removeMapped(Collection<? extends Mapping> mappings, BitSet srcMatched, BitSet dstMatched) {
 		Iterator<? extends Mapping> trIt = mappings.iterator();
 		while (trIt.hasNext()) {
 			Mapping t = trIt.next();
-			if (t.getFirst().isMatched() || t.getSecond().isMatched()) trIt.remove();
+			if (srcMatched.get(t.getFirst().getId()) || dstMatched.get(t.getSecond().getId())) trIt.remove();
 		}
 	}
 
-	public static List<Tree> removeMapped(List<Tree> trees) {
+	/**
+	 * Remove the matched trees from the given list.
+	 * @param matched the ids of the matched trees.
+	 */
+	public static List<Tree> removeMapped(List<Tree> trees, BitSet matched) {
 		Iterator<Tree> trIt = trees.iterator();
 		while (trIt.hasNext()) {
 			Tree t = trIt.next();
-			if (t.isMatched()) trIt.remove();
+			if (matched.get(t.getId())) trIt.remove();
 		}
 		return trees;
 	}
 
 	/**
-	 * Remove mapped nodes from the tree. Be careful this method will invalidate
-	 * all the metrics of this tree and its descendants. If you need them, you need
-	 * to recompute them.
+	 * Remove mapped nodes from the tree. The size, height and digest of the remaining
+	 * nodes are updated along the paths leading to the removed nodes only.
 	 * @param tree 
+	 * @param matched the ids of the matched trees.
 	 * @return
 	 */
-	public static Tree removeMatched(Tree tree) {
+	public static Tree removeMatched(Tree tree, BitSet matched) {
+		return removeMatched(tree, matched, defaultDigestGenerator());
+	}
+
+	/**
+	 * Same as {@link #removeMatched(Tree, BitSet)}, for a tree whose digests have been computed
+	 * with the given generator.
+	 */
+	public static Tree removeMatched(Tree tree, BitSet matched, DigestGenerator g) {
+		List<Tree> parents = new ArrayList<>();
 		for (Tree t: tree.getTrees()) {
-			if (t.isMatched()) {
-				if (t.getParent() != null) t.getParent().getChildren().remove(t);
+			if (matched.get(t.getId())) {
+				if (t.getParent() != null) {
+					parents.add(t.getParent());
+					t.getParent().getChildren().remove(t);
+				}
 				t.setParent(null);
 			}
 		}
-		tree.refresh();
+		if (!parents.isEmpty()) refreshAncestors(parents, g);
 		return tree;
 	}
 
@@ -196,11 +519,12 @@ public final class TreeUtils {
 	 * all the metrics of this tree and its descendants. If you need them, you need
 	 * to recompute them.
 	 * @param tree 
+	 * @param matched the ids of the matched trees.
 	 * @return
 	 */
-	public static Tree removeCompletelyMapped(Tree tree) {
+	public static Tree removeCompletelyMapped(Tree tree, BitSet matched) {
 		for (Tree t: tree.getTrees()) {
-			if (t.isMatched() && t.areDescendantsMatched()) {
+			if (matched.get(t.getId()) && areDescendantsMatched(t, matched)) {
 				t.getParent().getChildren().remove(t);
 				t.setParent(null);
 			}
@@ -208,6 +532,15 @@ public final class TreeUtils {
 		return tree;
 	}
 
+	/**
+	 * Indicate whether or not all the descendants of the tree are matched.
+	 * @param matched the ids of the matched trees.
+	 */
+	public static boolean areDescendantsMatched(Tree tree, BitSet matched) {
+		for (int i = 1; i < tree.getSize(); i++) if (!matched.get(tree.getPreOrderTree(i).getId())) return false;
+		return true;
+	}
+
 	public enum OrderKind {
 		PRE_ORDER,
 		POST_ORDER,
@@ -0,0 +1,18 @@
+package fr.labri.gumtree.tree;
+
+/**
+ * Callbacks of a depth-first traversal performed by {@link TreeUtils#visitTree(Tree, TreeVisitor)}.
+ */
+public interface TreeVisitor {
+
+	/**
+	 * Called when the traversal enters the tree, before its children (pre-order).
+	 */
+	void startTree(Tree tree);
+
+	/**
+	 * Called when the traversal leaves the tree, after its children (post-order).
+	 */
+	void endTree(Tree tree);
+
+}
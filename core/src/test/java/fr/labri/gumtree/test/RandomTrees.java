@@ -0,0 +1,76 @@
+package fr.labri.gumtree.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import fr.labri.gumtree.matchers.MappingStore;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+/**
+ * Random trees and random edits of trees, used to compare the matchers with reference implementations.
+ */
+public class RandomTrees {
+
+	private static final String[] LABELS = { "", "", "", "a", "b", "foo", "bar", "getName", "setName", "i", "0", "1" };
+
+	/**
+	 * Returns a random tree of the given size, whose nodes have one of the given number of types.
+	 */
+	public static Tree tree(Random rdm, int size, int types) {
+		Tree[] trees = new Tree[size];
+		trees[0] = new Tree(0, "");
+		for (int i = 1; i < size; i++) {
+			trees[i] = new Tree(rdm.nextInt(types), LABELS[rdm.nextInt(LABELS.length)]);
+			trees[rdm.nextInt(i)].addChild(trees[i]);
+		}
+		refresh(trees[0]);
+		return trees[0];
+	}
+
+	/**
+	 * Returns a copy of the tree with the given number of random relabels, insertions and deletions.
+	 */
+	public static Tree edit(Random rdm, Tree tree, int types, int edits) {
+		Tree copy = tree.deepCopy();
+		for (int e = 0; e < edits; e++) {
+			List<Tree> trees = copy.getTrees();
+			Tree t = trees.get(rdm.nextInt(trees.size()));
+			switch (rdm.nextInt(3)) {
+			case 0:
+				t.setLabel(LABELS[rdm.nextInt(LABELS.length)]);
+				break;
+			case 1:
+				t.addChild(new Tree(rdm.nextInt(types), LABELS[rdm.nextInt(LABELS.length)]));
+				break;
+			default:
+				if (t.isRoot()) break;
+				Tree parent = t.getParent();
+				int pos = parent.getChildPosition(t);
+				parent.getChildren().remove(pos);
+				parent.getChildren().addAll(pos, t.getChildren());
+				for (Tree c: t.getChildren()) c.setParent(parent);
+			}
+		}
+		refresh(copy);
+		return copy;
+	}
+
+	/**
+	 * Returns the id of the destination tree mapped to each source tree in post-order, or -1.
+	 */
+	public static int[] mappedIds(MappingStore mappings, Tree src) {
+		List<Tree> trees = TreeUtils.postOrder(src);
+		int[] ids = new int[trees.size()];
+		Arrays.fill(ids, -1);
+		for (int i = 0; i < ids.length; i++) if (mappings.hasSrc(trees.get(i))) ids[i] = mappings.getDst(trees.get(i)).getId();
+		return ids;
+	}
+
+	private static void refresh(Tree tree) {
+		tree.refresh();
+		TreeUtils.postOrderNumbering(tree);
+	}
+
+}
@@ -0,0 +1,158 @@
+package fr.labri.gumtree.test;
+
+import static fr.labri.gumtree.test.Constants.DUMMY_DST;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.io.TreeIoUtils;
+import fr.labri.gumtree.matchers.CandidateIndex;
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.MatcherFactory;
+import fr.labri.gumtree.matchers.heuristic.cd.ChangeDistillerBottumUpMatcher;
+import fr.labri.gumtree.matchers.heuristic.cd.ChangeDistillerLeavesMatcher;
+import fr.labri.gumtree.matchers.heuristic.gt.GreedyBottomUpMatcher;
+import fr.labri.gumtree.matchers.heuristic.gt.GreedySubtreeMatcher;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+public class TestBottomUpMatchers {
+
+	private static final int TYPES = 4;
+
+	@Test
+	public void testCandidateIndex() {
+		Tree dst = TreeIoUtils.fromXmlFile(DUMMY_DST);
+		BitSet matched = new BitSet();
+		CandidateIndex index = new CandidateIndex(dst, matched);
+		for (Tree t: dst.getTrees()) {
+			List<Tree> candidates = index.getCandidates(t.getType());
+			assertEquals(!t.isLeaf(), candidates.contains(t));
+		}
+		for (int type = 0; type < 10; type++) {
+			List<Tree> candidates = index.getCandidates(type);
+			for (int i = 1; i < candidates.size(); i++)
+				assertTrue(candidates.get(i - 1).getId() < candidates.get(i).getId());
+		}
+		matched.set(dst.getId());
+		assertTrue(!index.getCandidates(dst.getType()).contains(dst));
+	}
+
+	@Test
+	public void testGreedyBottomUpSameAsAllPairs() {
+		Random rdm = new Random(1L);
+		int added = 0;
+		for (int k = 0; k < 30; k++) {
+			Tree src = RandomTrees.tree(rdm, 20 + rdm.nextInt(200), TYPES);
+			Tree dst = RandomTrees.edit(rdm, src, TYPES, 1 + rdm.nextInt(20));
+			Matcher seed = new GreedySubtreeMatcher(src, dst);
+			seed.match();
+
+			GreedyBottomUpMatcher m = new GreedyBottomUpMatcher(src, dst);
+			m.setRecoveryMatcherFactory(new NoRecovery());
+			m.setMappings(seed.getMappings().copy());
+			m.match();
+			Matcher ref = new AllPairsGreedyBottomUpMatcher(src, dst);
+			ref.setMappings(seed.getMappings().copy());
+			ref.match();
+			assertArrayEquals(RandomTrees.mappedIds(ref.getMappings(), src), RandomTrees.mappedIds(m.getMappings(), src));
+			added += m.getMappings().size() - seed.getMappings().size();
+		}
+		assertTrue(added > 0);
+	}
+
+	@Test
+	public void testChangeDistillerBottomUpSameAsAllPairs() {
+		Random rdm = new Random(2L);
+		int added = 0;
+		for (int k = 0; k < 30; k++) {
+			Tree src = RandomTrees.tree(rdm, 20 + rdm.nextInt(200), TYPES);
+			Tree dst = RandomTrees.edit(rdm, src, TYPES, 1 + rdm.nextInt(20));
+			Matcher seed = new ChangeDistillerLeavesMatcher(src, dst);
+			seed.match();
+
+			Matcher m = new ChangeDistillerBottumUpMatcher(src, dst);
+			m.setMappings(seed.getMappings().copy());
+			m.match();
+			Matcher ref = new AllPairsChangeDistillerBottomUpMatcher(src, dst);
+			ref.setMappings(seed.getMappings().copy());
+			ref.match();
+			assertArrayEquals(RandomTrees.mappedIds(ref.getMappings(), src), RandomTrees.mappedIds(m.getMappings(), src));
+			added += m.getMappings().size() - seed.getMappings().size();
+		}
+		assertTrue(added > 0);
+	}
+
+	private static class NoRecovery implements MatcherFactory {
+
+		@Override
+		public Matcher newMatcher(Tree src, Tree dst) {
+			return null;
+		}
+
+	}
+
+	/**
+	 * Bottom-up matcher of GumTree without recovery, comparing each source node with every destination node.
+	 */
+	private static class AllPairsGreedyBottomUpMatcher extends Matcher {
+
+		public AllPairsGreedyBottomUpMatcher(Tree src, Tree dst) {
+			super(src, dst);
+		}
+
+		@Override
+		public void match() {
+			List<Tree> poSrc = TreeUtils.removeMapped(TreeUtils.postOrder(src), srcMatched);
+			List<Tree> poDst = TreeUtils.removeMapped(TreeUtils.postOrder(dst), dstMatched);
+			for (Tree src: poSrc)
+				for (Tree dst: poDst)
+					if (isMatchable(src, dst) && !(src.isLeaf() || dst.isLeaf())) {
+						double sim = jaccardSimilarity(src, dst);
+						if (sim >= 0.5D || (src.isRoot() && dst.isRoot())) {
+							addMapping(src, dst);
+							break;
+						}
+					}
+			clean();
+		}
+
+	}
+
+	/**
+	 * Bottom-up matcher of ChangeDistiller, comparing each source node with every destination node
+	 * and counting the leafs of each source node.
+	 */
+	private static class AllPairsChangeDistillerBottomUpMatcher extends Matcher {
+
+		public AllPairsChangeDistillerBottomUpMatcher(Tree src, Tree dst) {
+			super(src, dst);
+		}
+
+		@Override
+		public void match() {
+			List<Tree> poDst = TreeUtils.postOrder(dst);
+			for (Tree src: TreeUtils.postOrder(this.src)) {
+				int l = 0;
+				for (Tree t: src.getTrees()) if (t != src && t.isLeaf()) l++;
+				for (Tree dst: poDst)
+					if (isMatchable(src, dst) && !(src.isLeaf() || dst.isLeaf())) {
+						double sim = chawatheSimilarity(src, dst);
+						if ((l > 4 && sim >= ChangeDistillerBottumUpMatcher.STRUCT_SIM_THRESHOLD_1)
+								|| (l <= 4 && sim >= ChangeDistillerBottumUpMatcher.STRUCT_SIM_THRESHOLD_2)) {
+							addMapping(src, dst);
+							break;
+						}
+					}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import uk.ac.shef.wit.simmetrics.similaritymetrics.QGramsDistance;
+import fr.labri.gumtree.matchers.Mapping;
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.heuristic.cd.ChangeDistillerLeavesMatcher;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+public class TestChangeDistillerLeavesMatcher {
+
+	private static final int TYPES = 3;
+
+	@Test
+	public void testSameAsAllPairs() {
+		Random rdm = new Random(3L);
+		int mapped = 0;
+		for (int k = 0; k < 30; k++) {
+			Tree src = RandomTrees.tree(rdm, 20 + rdm.nextInt(200), TYPES);
+			for (Tree t: src.getTrees()) if (t.isLeaf()) t.setLabel(word(rdm));
+			Tree dst = RandomTrees.edit(rdm, src, TYPES, 1 + rdm.nextInt(20));
+			for (Tree t: dst.getTrees()) if (t.isLeaf() && rdm.nextInt(3) == 0) t.setLabel(edit(rdm, t.getLabel()));
+
+			Matcher m = new ChangeDistillerLeavesMatcher(src, dst);
+			m.match();
+			Matcher ref = new AllPairsLeavesMatcher(src, dst);
+			ref.match();
+			assertArrayEquals(RandomTrees.mappedIds(ref.getMappings(), src), RandomTrees.mappedIds(m.getMappings(), src));
+			mapped += m.getMappings().size();
+		}
+		assertTrue(mapped > 0);
+	}
+
+	private static String word(Random rdm) {
+		StringBuilder b = new StringBuilder();
+		int length = rdm.nextInt(8);
+		for (int i = 0; i < length; i++) b.append((char) ('a' + rdm.nextInt(4)));
+		return b.toString();
+	}
+
+	private static String edit(Random rdm, String label) {
+		StringBuilder b = new StringBuilder(label);
+		if (b.length() > 0 && rdm.nextBoolean()) b.deleteCharAt(rdm.nextInt(b.length()));
+		else b.insert(rdm.nextInt(b.length() + 1), (char) ('a' + rdm.nextInt(4)));
+		return b.toString();
+	}
+
+	/**
+	 * Leaves matcher of ChangeDistiller scoring every pair of leaves with simmetrics.
+	 */
+	private static class AllPairsLeavesMatcher extends Matcher {
+
+		private static final QGramsDistance QGRAM = new QGramsDistance();
+
+		public AllPairsLeavesMatcher(Tree src, Tree dst) {
+			super(src, dst);
+		}
+
+		@Override
+		public void match() {
+			List<Mapping> leafMappings = new LinkedList<Mapping>();
+			for (Tree srcLeaf: TreeUtils.postOrder(src))
+				for (Tree dstLeaf: TreeUtils.postOrder(dst))
+					if (srcLeaf.isLeaf() && dstLeaf.isLeaf() && isMatchable(srcLeaf, dstLeaf)) {
+						double sim = QGRAM.getSimilarity(srcLeaf.getLabel(), dstLeaf.getLabel());
+						if (sim > ChangeDistillerLeavesMatcher.LABEL_SIM_THRESHOLD) leafMappings.add(new Mapping(srcLeaf, dstLeaf));
+					}
+
+			Set<Tree> srcIgnored = new HashSet<>();
+			Set<Tree> dstIgnored = new HashSet<>();
+			Collections.sort(leafMappings, new Comparator<Mapping>() {
+				@Override
+				public int compare(Mapping m1, Mapping m2) {
+					return Double.compare(sim(m1), sim(m2));
+				}
+			});
+			while (leafMappings.size() > 0) {
+				Mapping best = leafMappings.remove(0);
+				if (!(srcIgnored.contains(best.getFirst()) || dstIgnored.contains(best.getSecond()))) {
+					addMapping(best.getFirst(), best.getSecond());
+					srcIgnored.add(best.getFirst());
+					dstIgnored.add(best.getSecond());
+				}
+			}
+		}
+
+		private static double sim(Mapping m) {
+			return QGRAM.getSimilarity(m.getFirst().getLabel(), m.getSecond().getLabel());
+		}
+
+	}
+
+}
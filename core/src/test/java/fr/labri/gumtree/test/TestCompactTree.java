@@ -0,0 +1,58 @@
+package fr.labri.gumtree.test;
+
+import static fr.labri.gumtree.test.Constants.DUMMY_SRC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.io.TreeIoUtils;
+import fr.labri.gumtree.tree.CompactTree;
+import fr.labri.gumtree.tree.Tree;
+
+public class TestCompactTree {
+
+	@Test
+	public void testStructure() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		CompactTree tree = new CompactTree(root);
+		assertEquals(5, tree.size());
+		assertEquals(4, tree.getRoot());
+		assertEquals("a", tree.getLabel(4));
+		assertEquals("c", tree.getLabel(0));
+		assertEquals(2, tree.getFirstChild(4));
+		assertEquals(3, tree.getNextSibling(2));
+		assertEquals(CompactTree.NO_NODE, tree.getNextSibling(3));
+		assertEquals(2, tree.getParent(1));
+		assertEquals(2, tree.getChildrenCount(4));
+		assertTrue(tree.isRoot(4));
+		assertTrue(tree.isLeaf(0));
+		assertFalse(tree.isLeaf(2));
+	}
+
+	@Test
+	public void testMetrics() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		CompactTree tree = new CompactTree(root);
+		assertEquals(5, tree.getSize(4));
+		assertEquals(3, tree.getSize(2));
+		assertEquals(2, tree.getHeight(4));
+		assertEquals(2, tree.getDepth(0));
+		assertEquals(root.getDigest(), tree.getDigest(4));
+		assertEquals(0, tree.getFirstDescendant(4));
+		assertTrue(tree.isDescendant(1, 2));
+		assertFalse(tree.isDescendant(3, 2));
+	}
+
+	@Test
+	public void testToTree() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree copy = new CompactTree(root).toTree();
+		assertTrue(root.isClone(copy));
+		assertEquals(4, copy.getId());
+		assertEquals(0, copy.getChildren().get(0).getChildren().get(0).getId());
+		assertEquals("b", copy.getChildren().get(0).getLabel());
+	}
+
+}
@@ -0,0 +1,62 @@
+package fr.labri.gumtree.test;
+
+import static fr.labri.gumtree.test.Constants.DUMMY_DST;
+import static fr.labri.gumtree.test.Constants.DUMMY_SRC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.io.TreeIoUtils;
+import fr.labri.gumtree.matchers.Mapping;
+import fr.labri.gumtree.matchers.MappingStore;
+import fr.labri.gumtree.tree.Tree;
+
+public class TestMappingStore {
+
+	@Test
+	public void testLinkUnlink() {
+		Tree src = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree dst = TreeIoUtils.fromXmlFile(DUMMY_DST);
+		MappingStore ms = new MappingStore();
+		ms.link(src, dst);
+		ms.link(src.getChildren().get(1), dst.getChildren().get(0));
+		assertEquals(2, ms.size());
+		assertSame(dst, ms.getDst(src));
+		assertSame(src, ms.getSrc(dst));
+		assertTrue(ms.has(src.getChildren().get(1), dst.getChildren().get(0)));
+		assertFalse(ms.hasSrc(src.getChildren().get(0)));
+		ms.unlink(src, dst);
+		assertEquals(1, ms.size());
+		assertNull(ms.getDst(src));
+		assertFalse(ms.hasDst(dst));
+	}
+
+	@Test
+	public void testIterationAndCopy() {
+		Tree src = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree dst = TreeIoUtils.fromXmlFile(DUMMY_DST);
+		Tree vsrc = new Tree(-1, "");
+		Tree vdst = new Tree(-1, "");
+		vsrc.setId(-1);
+		vdst.setId(-1);
+		MappingStore ms = new MappingStore();
+		ms.link(src, dst);
+		ms.link(vsrc, vdst);
+		ms.link(src.getChildren().get(0), dst.getChildren().get(0));
+		int count = 0;
+		for (Mapping m: ms) if (ms.has(m.getFirst(), m.getSecond())) count++;
+		assertEquals(3, count);
+
+		MappingStore copy = ms.copy();
+		copy.unlink(src, dst);
+		assertEquals(2, copy.size());
+		assertEquals(3, ms.size());
+		assertSame(vdst, copy.getDst(vsrc));
+		assertSame(dst, ms.getDst(src));
+	}
+
+}
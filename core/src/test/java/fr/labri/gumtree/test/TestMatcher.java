@@ -0,0 +1,47 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.MatcherFactories;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+public class TestMatcher {
+
+	@Test
+	public void testUnnumberedTrees() {
+		Tree src = new Tree(0);
+		src.addChild(new Tree(1, "a"));
+		src.addChild(new Tree(1, "b"));
+		src.refresh();
+		Tree dst = src.deepCopy();
+		assertEquals(Tree.NO_ID, src.getId());
+		try {
+			MatcherFactories.newMatcher(src, dst);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(Tree.NO_ID, src.getId());
+		}
+
+		TreeUtils.postOrderNumbering(src);
+		TreeUtils.postOrderNumbering(dst);
+		dst.getChildren().get(0).setId(-5);
+		try {
+			MatcherFactories.newMatcher(src, dst);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(-5, dst.getChildren().get(0).getId());
+		}
+
+		dst.getChildren().get(0).setId(0);
+		Matcher m = MatcherFactories.newMatcher(src, dst);
+		m.match();
+		assertEquals(3, m.getMappings().size());
+	}
+
+}
@@ -0,0 +1,31 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import uk.ac.shef.wit.simmetrics.similaritymetrics.QGramsDistance;
+import fr.labri.gumtree.algo.QGrams;
+
+public class TestQGrams {
+
+	private static final String[] LABELS = { "", "a", "aa", "ab", "ba", "foo", "foobar", "barfoo", "fooo", "##",
+		"getName", "setName", "getNames", "java.util.List", "java.util.Map", "aaaaaa", "aaaab", "é€x" };
+
+	@Test
+	public void testSameScoresAsSimmetrics() {
+		QGramsDistance qgram = new QGramsDistance();
+		for (String s1: LABELS)
+			for (String s2: LABELS)
+				assertEquals(qgram.getSimilarity(s1, s2), QGrams.similarity(s1, s2), 0F);
+	}
+
+	@Test
+	public void testProfile() {
+		assertEquals(2, QGrams.profile("").length);
+		assertEquals(5, QGrams.profile("foo").length);
+		assertEquals(1F, QGrams.similarity("foo", "foo"), 0F);
+		assertEquals(0F, QGrams.similarity("foo", "bar"), 0F);
+	}
+
+}
@@ -0,0 +1,54 @@
+package fr.labri.gumtree.test;
+
+import static fr.labri.gumtree.test.Constants.DUMMY_DST;
+import static fr.labri.gumtree.test.Constants.DUMMY_SRC;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.io.TreeIoUtils;
+import fr.labri.gumtree.matchers.MatcherFactory;
+import fr.labri.gumtree.matchers.RecoveryMatcherFactory;
+import fr.labri.gumtree.matchers.heuristic.LcsMatcher;
+import fr.labri.gumtree.matchers.optimal.rted.RtedMatcher;
+import fr.labri.gumtree.tree.Tree;
+
+public class TestRecoveryMatcherFactory {
+
+	@Test
+	public void testSelection() {
+		Tree src = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree dst = TreeIoUtils.fromXmlFile(DUMMY_DST);
+		assertTrue(RecoveryMatcherFactory.withSizeLimits(100, Integer.MAX_VALUE).newMatcher(src, dst) instanceof RtedMatcher);
+		long cells = (long) src.getSize() * (long) dst.getSize();
+		assertTrue(RecoveryMatcherFactory.withBudget(cells, 4L * cells).newMatcher(src, dst) instanceof LcsMatcher);
+		assertNull(RecoveryMatcherFactory.withBudget(cells - 1, Long.MAX_VALUE).newMatcher(src, dst));
+	}
+
+	@Test
+	public void testRootSizedPair() {
+		// About the size of the syntax tree of a Java file of a thousand lines.
+		Random rdm = new Random(3L);
+		Tree src = RandomTrees.tree(rdm, 12000, 20);
+		Tree dst = RandomTrees.edit(rdm, src, 20, 50);
+		Tree small = RandomTrees.tree(rdm, 60, 20);
+
+		// The defaults of the bottom-up matchers, as their previous size thresholds.
+		MatcherFactory complete = RecoveryMatcherFactory.withSizeLimits(100, Integer.MAX_VALUE);
+		MatcherFactory greedy = RecoveryMatcherFactory.withSizeLimits(200, 200);
+		assertNull(complete.newMatcher(src, dst));
+		assertNull(greedy.newMatcher(src, dst));
+		assertTrue(complete.newMatcher(small, dst) instanceof RtedMatcher);
+		assertNull(greedy.newMatcher(small, dst));
+		assertTrue(greedy.newMatcher(small, small) instanceof RtedMatcher);
+
+		long cells = (long) src.getSize() * (long) dst.getSize();
+		MatcherFactory budget = RecoveryMatcherFactory.withBudget(1L << 24, 64L << 20);
+		assertNull(budget.newMatcher(src, dst));
+		assertTrue(RecoveryMatcherFactory.withBudget(cells, 4L * cells).newMatcher(src, dst) instanceof LcsMatcher);
+	}
+
+}
@@ -0,0 +1,170 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.optimal.rted.RtedAlgorithm;
+import fr.labri.gumtree.matchers.optimal.rted.RtedMatcher;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+public class TestRted {
+
+	private static final double[][] COSTS = { { 1D, 1D, 1D }, { 0.1D, 0.1D, 0.3D }, { 1D, 2D, 1.5D } };
+
+	@Test
+	public void testSameDistancesAsZhangShasha() {
+		Random rdm = new Random(4L);
+		for (int k = 0; k < 60; k++) {
+			Tree t1 = RandomTrees.tree(rdm, 1 + rdm.nextInt(40), 3);
+			Tree t2 = (rdm.nextBoolean()) ? RandomTrees.edit(rdm, t1, 3, 1 + rdm.nextInt(10)) : RandomTrees.tree(rdm, 1 + rdm.nextInt(40), 3);
+			for (double[] c: COSTS) {
+				double expected = new ZhangShasha(t1, t2, c).distance();
+				RtedAlgorithm a = RtedAlgorithm.getThreadInstance(c[0], c[1], c[2]);
+				assertEquals(expected, a.nonNormalizedTreeDist(t1, t2), 1E-4);
+				assertEquals(expected, mappingCost(t1, t2, a.computeEditMapping(), c), 1E-4);
+			}
+		}
+	}
+
+	@Test
+	public void testThreadInstanceSameAsFreshInstances() {
+		Random rdm = new Random(7L);
+		int[][] shapes = { { 300, 8 }, { 8, 300 }, { 120, 120 }, { 3, 5 }, { 40, 250 }, { 300, 8 } };
+		for (int[] shape: shapes) {
+			Tree t1 = RandomTrees.tree(rdm, shape[0], 3);
+			Tree t2 = RandomTrees.tree(rdm, shape[1], 3);
+			for (double[] c: COSTS) {
+				RtedAlgorithm fresh = new RtedAlgorithm(c[0], c[1], c[2]);
+				double expected = fresh.nonNormalizedTreeDist(t1, t2);
+				List<int[]> expectedMapping = fresh.computeEditMapping();
+				RtedAlgorithm a = RtedAlgorithm.getThreadInstance(c[0], c[1], c[2]);
+				assertEquals(expected, a.nonNormalizedTreeDist(t1, t2), 0D);
+				List<int[]> mapping = a.computeEditMapping();
+				assertEquals(expectedMapping.size(), mapping.size());
+				for (int i = 0; i < mapping.size(); i++) assertArrayEquals(expectedMapping.get(i), mapping.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testMatcherRefusesTooLargeTrees() {
+		Tree t1 = new Tree(0, "");
+		Tree t2 = new Tree(0, "");
+		for (int i = 0; i < 200000; i++) {
+			t1.addChild(new Tree(1, "a"));
+			t2.addChild(new Tree(1, "a"));
+		}
+		t1.refresh();
+		t2.refresh();
+		TreeUtils.postOrderNumbering(t1);
+		TreeUtils.postOrderNumbering(t2);
+		assertTrue(!RtedAlgorithm.fitsInMemory(t1, t2));
+		Matcher m = new RtedMatcher(t1, t2);
+		m.match();
+		assertEquals(0, m.getMappings().size());
+	}
+
+	/**
+	 * Returns the cost of the edit mapping, after checking that each node is deleted, inserted
+	 * or mapped exactly once.
+	 */
+	private static double mappingCost(Tree t1, Tree t2, List<int[]> mapping, double[] c) {
+		List<Tree> po1 = TreeUtils.postOrder(t1);
+		List<Tree> po2 = TreeUtils.postOrder(t2);
+		int[] seen1 = new int[po1.size() + 1];
+		int[] seen2 = new int[po2.size() + 1];
+		double cost = 0D;
+		for (int[] m: mapping) {
+			seen1[m[0]]++;
+			seen2[m[1]]++;
+			if (m[1] == 0) cost += c[0];
+			else if (m[0] == 0) cost += c[1];
+			else if (!po1.get(m[0] - 1).getLabel().equals(po2.get(m[1] - 1).getLabel())) cost += c[2];
+		}
+		for (int i = 1; i < seen1.length; i++) assertEquals(1, seen1[i]);
+		for (int j = 1; j < seen2.length; j++) assertEquals(1, seen2[j]);
+		return cost;
+	}
+
+	/**
+	 * Tree edit distance of Zhang and Shasha, with doubles, used as a reference.
+	 */
+	private static class ZhangShasha {
+
+		private final String[] labels1;
+
+		private final String[] labels2;
+
+		private final int[] lld1;
+
+		private final int[] lld2;
+
+		private final double[] costs;
+
+		private final double[][] treedist;
+
+		private ZhangShasha(Tree t1, Tree t2, double[] costs) {
+			List<Tree> po1 = TreeUtils.postOrder(t1);
+			List<Tree> po2 = TreeUtils.postOrder(t2);
+			labels1 = labels(po1);
+			labels2 = labels(po2);
+			lld1 = lld(po1);
+			lld2 = lld(po2);
+			this.costs = costs;
+			treedist = new double[po1.size()][po2.size()];
+		}
+
+		private double distance() {
+			for (int i = 0; i < labels1.length; i++)
+				for (int j = 0; j < labels2.length; j++)
+					if (isKeyRoot(lld1, i) && isKeyRoot(lld2, j)) forestDist(i, j);
+			return treedist[labels1.length - 1][labels2.length - 1];
+		}
+
+		private void forestDist(int i, int j) {
+			int li = lld1[i];
+			int lj = lld2[j];
+			double[][] fd = new double[i - li + 2][j - lj + 2];
+			for (int x = 1; x <= i - li + 1; x++) fd[x][0] = fd[x - 1][0] + costs[0];
+			for (int y = 1; y <= j - lj + 1; y++) fd[0][y] = fd[0][y - 1] + costs[1];
+			for (int x = 1; x <= i - li + 1; x++)
+				for (int y = 1; y <= j - lj + 1; y++) {
+					int i1 = li + x - 1;
+					int j1 = lj + y - 1;
+					double d = Math.min(fd[x - 1][y] + costs[0], fd[x][y - 1] + costs[1]);
+					if (lld1[i1] == li && lld2[j1] == lj) {
+						double ren = labels1[i1].equals(labels2[j1]) ? 0D : costs[2];
+						fd[x][y] = Math.min(d, fd[x - 1][y - 1] + ren);
+						treedist[i1][j1] = fd[x][y];
+					} else fd[x][y] = Math.min(d, fd[lld1[i1] - li][lld2[j1] - lj] + treedist[i1][j1]);
+				}
+		}
+
+		private static boolean isKeyRoot(int[] lld, int i) {
+			for (int k = i + 1; k < lld.length; k++) if (lld[k] == lld[i]) return false;
+			return true;
+		}
+
+		private static String[] labels(List<Tree> po) {
+			String[] labels = new String[po.size()];
+			for (int i = 0; i < labels.length; i++) labels[i] = po.get(i).getLabel();
+			return labels;
+		}
+
+		private static int[] lld(List<Tree> po) {
+			int[] lld = new int[po.size()];
+			for (int i = 0; i < lld.length; i++) lld[i] = i - po.get(i).getSize() + 1;
+			return lld;
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.algo.HungarianAlgorithm;
+import fr.labri.gumtree.algo.SparseAssignment;
+
+public class TestSparseAssignment {
+
+	@Test
+	public void testSameCostAsHungarian() {
+		Random rdm = new Random(42L);
+		for (int k = 0; k < 200; k++) {
+			int rows = 1 + rdm.nextInt(10);
+			int cols = 1 + rdm.nextInt(10);
+			double[][] costs = new double[rows][cols];
+			SparseAssignment sparse = new SparseAssignment(rows, cols);
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < cols; j++) {
+					costs[i][j] = rdm.nextInt(20);
+					sparse.addCandidate(i, j, costs[i][j]);
+				}
+			int[] expected = new HungarianAlgorithm(costs).execute();
+			int[] actual = sparse.execute(1000D);
+			assertEquals(cost(costs, expected), cost(costs, actual), 0D);
+			assertEquals(Math.min(rows, cols), assigned(actual));
+		}
+	}
+
+	@Test
+	public void testUnassigned() {
+		SparseAssignment sparse = new SparseAssignment(3, 2);
+		sparse.addCandidate(0, 0, 1D);
+		sparse.addCandidate(1, 0, 0D);
+		sparse.addCandidate(1, 1, 5D);
+		sparse.addCandidate(2, 1, 8D);
+		int[] assignment = sparse.execute(4D);
+		assertEquals(-1, assignment[0]);
+		assertEquals(0, assignment[1]);
+		assertEquals(-1, assignment[2]);
+		assignment = sparse.execute(10D);
+		assertEquals(0, assignment[0]);
+		assertEquals(1, assignment[1]);
+		assertEquals(-1, assignment[2]);
+	}
+
+	private static double cost(double[][] costs, int[] assignment) {
+		double cost = 0D;
+		for (int i = 0; i < assignment.length; i++) if (assignment[i] != -1) cost += costs[i][assignment[i]];
+		return cost;
+	}
+
+	private static int assigned(int[] assignment) {
+		int assigned = 0;
+		for (int col: assignment) if (col != -1) assigned++;
+		return assigned;
+	}
+
+}
@@ -0,0 +1,99 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.algo.StringAlgorithms;
+
+public class TestStringAlgorithms {
+
+	@Test
+	public void testLcss() {
+		String s0 = "abcabba";
+		String s1 = "cbabac";
+		List<int[]> lcs = StringAlgorithms.lcss(s0, s1);
+		assertEquals(4, lcs.size());
+		int[] previous = { -1, -1 };
+		for (int[] match: lcs) {
+			assertTrue(match[0] > previous[0] && match[1] > previous[1]);
+			assertEquals(s0.charAt(match[0]), s1.charAt(match[1]));
+			previous = match;
+		}
+		assertEquals(0, StringAlgorithms.lcss("", "abc").size());
+		assertEquals(3, StringAlgorithms.lcss("abc", "abc").size());
+	}
+
+	@Test
+	public void testLcs() {
+		assertEquals("abab", StringAlgorithms.lcs("xababyabab", "zabab"));
+		assertEquals("ab", StringAlgorithms.lcs("abxcd", "cdyab"));
+		assertEquals("", StringAlgorithms.lcs("abc", "def"));
+		assertEquals("", StringAlgorithms.lcs("", "abc"));
+	}
+
+	@Test
+	public void testRandomLcss() {
+		Random rdm = new Random(1L);
+		for (int k = 0; k < 3000; k++) {
+			int alphabet = 1 + rdm.nextInt(4);
+			String s0 = randomString(rdm, rdm.nextInt(51), alphabet);
+			String s1 = randomString(rdm, rdm.nextInt(51), alphabet);
+			List<int[]> lcs = StringAlgorithms.lcss(s0, s1);
+			assertEquals(lcssLength(s0, s1), lcs.size());
+			int[] previous = { -1, -1 };
+			for (int[] match: lcs) {
+				assertTrue(match[0] > previous[0] && match[1] > previous[1]);
+				assertTrue(match[0] < s0.length() && match[1] < s1.length());
+				assertEquals(s0.charAt(match[0]), s1.charAt(match[1]));
+				previous = match;
+			}
+		}
+	}
+
+	@Test
+	public void testRandomLcs() {
+		Random rdm = new Random(2L);
+		for (int k = 0; k < 3000; k++) {
+			int alphabet = 1 + rdm.nextInt(4);
+			String s1 = randomString(rdm, rdm.nextInt(51), alphabet);
+			String s2 = randomString(rdm, rdm.nextInt(51), alphabet);
+			assertEquals(bruteForceLcs(s1, s2), StringAlgorithms.lcs(s1, s2));
+		}
+	}
+
+	private static String randomString(Random rdm, int length, int alphabet) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) chars[i] = (char) ('a' + rdm.nextInt(alphabet));
+		return new String(chars);
+	}
+
+	/**
+	 * Length of a longest common subsequence, by the quadratic dynamic programming.
+	 */
+	private static int lcssLength(String s0, String s1) {
+		int[][] lengths = new int[s0.length() + 1][s1.length() + 1];
+		for (int i = 1; i <= s0.length(); i++)
+			for (int j = 1; j <= s1.length(); j++)
+				if (s0.charAt(i - 1) == s1.charAt(j - 1)) lengths[i][j] = lengths[i - 1][j - 1] + 1;
+				else lengths[i][j] = Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+		return lengths[s0.length()][s1.length()];
+	}
+
+	/**
+	 * Longest common substring, the one ending first in s1 if there are several.
+	 */
+	private static String bruteForceLcs(String s1, String s2) {
+		String best = "";
+		for (int end = 1; end <= s1.length(); end++)
+			for (int start = end - best.length() - 1; start >= 0; start--)
+				if (s2.contains(s1.substring(start, end))) best = s1.substring(start, end);
+				else break;
+		return best;
+	}
+
+}
@@ -1,6 +1,8 @@
 package fr.labri.gumtree.test;
 
 import static fr.labri.gumtree.test.Constants.DUMMY_SRC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedList;
@@ -9,6 +11,8 @@ import java.util.List;
 import org.junit.Test;
 
 import fr.labri.gumtree.io.TreeIoUtils;
+import fr.labri.gumtree.tree.DigestGenerator;
+import fr.labri.gumtree.tree.SymbolTable;
 import fr.labri.gumtree.tree.Tree;
 import fr.labri.gumtree.tree.TreeUtils;
 
@@ -64,6 +68,46 @@ public class TestTree {
 		assertTrue(root.getChildren().get(0).getChildren().get(0).getLabel().equals("new"));
 	}
 	
+	@Test
+	public void testLabelInterning() {
+		Tree t1 = new Tree(0, new String("label"), "type");
+		Tree t2 = new Tree(0, new String("label"), "type");
+		Tree t3 = new Tree(0, "other", "type");
+		assertTrue(t1.getLabelId() == t2.getLabelId());
+		assertTrue(t1.getLabel() == t2.getLabel());
+		assertTrue(t1.getTypeLabelId() == t3.getTypeLabelId());
+		assertTrue(t1.isSimilar(t2));
+		assertFalse(t1.isSimilar(t3));
+		t3.setLabel("label");
+		assertTrue(t1.isSimilar(t3));
+	}
+
+	@Test
+	public void testPreOrderIndex() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree b = root.getChildren().get(0);
+		Tree d = b.getChildren().get(1);
+		Tree e = root.getChildren().get(1);
+		assertTrue(root.getPreOrderTree(0) == root);
+		assertTrue(b.getPreOrderTree(2) == d);
+		assertTrue(root.getPreOrderTree(4) == e);
+		assertTrue(d.getPreOrderIndex() == 3);
+		assertTrue(d.isDescendantOf(b));
+		assertTrue(d.isDescendantOf(root));
+		assertFalse(e.isDescendantOf(b));
+		assertFalse(b.isDescendantOf(b));
+	}
+
+	@Test
+	public void testReproducibleDigests() {
+		// The digests of a label do not depend on the order in which the labels are interned.
+		Tree t = new Tree(3, "reproducible digest label");
+		long l = DigestGenerator.mix64(SymbolTable.hash("reproducible digest label") + 3L * 0x9E3779B97F4A7C15L);
+		assertEquals(l, DigestGenerator.RollingLongHashGenerator.nodeDigest(t));
+		assertEquals((int) (l ^ (l >>> 32)), DigestGenerator.symbolDigest(t));
+		assertEquals("reproducible digest label@@3", t.toDigestString());
+	}
+
 	@Test
 	public void testIsClone() {
 		Tree tree = TreeIoUtils.fromXmlFile(DUMMY_SRC);
@@ -71,4 +115,16 @@ public class TestTree {
 		assertTrue(tree.isClone(copy));
 	}
 
+	@Test
+	public void testIsIsomorphic() {
+		Tree tree = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree copy = tree.deepCopy();
+		assertTrue(tree.isIsomorphic(copy));
+		copy.getChildren().get(0).getChildren().get(1).setLabel("x");
+		assertFalse(tree.isIsomorphic(copy));
+		copy = tree.deepCopy();
+		copy.getChildren().get(1).addChild(new Tree(3, "f"));
+		assertFalse(tree.isIsomorphic(copy));
+	}
+
 }
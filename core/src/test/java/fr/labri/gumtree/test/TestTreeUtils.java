@@ -4,10 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.BitSet;
+import java.util.List;
+
 import org.junit.Test;
 
 import static fr.labri.gumtree.test.Constants.*;
 import fr.labri.gumtree.io.TreeIoUtils;
+import fr.labri.gumtree.tree.DigestGenerator;
 import fr.labri.gumtree.tree.Tree;
 import fr.labri.gumtree.tree.TreeUtils;
 
@@ -45,6 +49,107 @@ public class TestTreeUtils {
 		assertEquals(0, root.getChildren().get(1).getHeight()); // depth of e
 	}
 	
+	@Test
+	public void testComputeMetrics() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree copy = root.deepCopy();
+		TreeUtils.computeSize(copy);
+		TreeUtils.computeDepth(copy);
+		TreeUtils.computeHeight(copy);
+		TreeUtils.computeDigest(copy);
+		for (Tree t: root.getTrees()) {
+			t.setSize(0);
+			t.setDepth(0);
+			t.setHeight(0);
+			t.setDigest(0);
+		}
+		TreeUtils.computeMetrics(root);
+		List<Tree> trees = root.getTrees();
+		List<Tree> copies = copy.getTrees();
+		for (int i = 0; i < trees.size(); i++) {
+			assertEquals(copies.get(i).getSize(), trees.get(i).getSize());
+			assertEquals(copies.get(i).getDepth(), trees.get(i).getDepth());
+			assertEquals(copies.get(i).getHeight(), trees.get(i).getHeight());
+			assertEquals(copies.get(i).getDigest(), trees.get(i).getDigest());
+			assertEquals(i, trees.get(i).getPreOrderIndex());
+		}
+	}
+
+	@Test
+	public void testParallelMetrics() {
+		Tree root = new Tree(0, "root");
+		for (int i = 0; i < 8; i++) {
+			Tree child = new Tree(1, "c" + i);
+			for (int j = 0; j < 5000; j++) child.addChild(new Tree(2, Integer.toString(j % 7)));
+			root.addChild(child);
+		}
+		Tree copy = root.deepCopy();
+		copy.refresh();
+		int threshold = TreeUtils.getParallelThreshold();
+		TreeUtils.setParallelThreshold(1000);
+		try {
+			root.refresh();
+		} finally {
+			TreeUtils.setParallelThreshold(threshold);
+		}
+		List<Tree> trees = root.getTrees();
+		List<Tree> copies = copy.getTrees();
+		assertEquals(copies.size(), trees.size());
+		for (int i = 0; i < trees.size(); i++) {
+			assertEquals(copies.get(i).getSize(), trees.get(i).getSize());
+			assertEquals(copies.get(i).getHeight(), trees.get(i).getHeight());
+			assertEquals(copies.get(i).getDigest(), trees.get(i).getDigest());
+		}
+	}
+
+	@Test
+	public void testDeepTree() {
+		Tree root = new Tree(0, "0");
+		Tree current = root;
+		for (int i = 1; i < 50000; i++) {
+			Tree child = new Tree(0, Integer.toString(i));
+			current.addChild(child);
+			current = child;
+		}
+		root.refresh();
+		assertEquals(50000, root.getSize());
+		assertEquals(49999, current.getDepth());
+		assertEquals(root, TreeUtils.preOrder(root).get(0));
+		assertEquals(root, TreeUtils.postOrder(root).get(49999));
+		assertEquals(current, TreeUtils.bfsOrder(root).get(49999));
+		Tree copy = root.deepCopy();
+		assertEquals(root.toDigestTreeString(), copy.toDigestTreeString());
+	}
+
+	@Test
+	public void testParallelDeepTree() {
+		Tree root = new Tree(0, "0");
+		Tree current = root;
+		for (int i = 1; i < 150000; i++) {
+			Tree child = new Tree(i % 3, Integer.toString(i % 11));
+			current.addChild(child);
+			if (i % 1000 == 0) child.addChild(new Tree(3, "leaf"));
+			current = child;
+		}
+		Tree copy = root.deepCopy();
+		int threshold = TreeUtils.getParallelThreshold();
+		TreeUtils.setParallelThreshold(Integer.MAX_VALUE);
+		try {
+			copy.refresh();
+		} finally {
+			TreeUtils.setParallelThreshold(threshold);
+		}
+		root.refresh();
+		List<Tree> trees = root.getTrees();
+		List<Tree> copies = copy.getTrees();
+		assertEquals(copies.size(), trees.size());
+		for (int i = 0; i < trees.size(); i++) {
+			assertEquals(copies.get(i).getSize(), trees.get(i).getSize());
+			assertEquals(copies.get(i).getHeight(), trees.get(i).getHeight());
+			assertEquals(copies.get(i).getDigest(), trees.get(i).getDigest());
+		}
+	}
+
 	@Test
 	public void testPreOrderNumbering() {
 		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
@@ -80,14 +185,105 @@ public class TestTreeUtils {
 		System.out.println(root.toDigestTreeString());
 	}
 	
+	@Test
+	public void testRollingLongDigest() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree croot = root.deepCopy();
+		DigestGenerator g = new DigestGenerator.RollingLongHashGenerator();
+		TreeUtils.computeDigest(root, g);
+		TreeUtils.computeDigest(croot, g);
+		assertTrue(root.getDigest() == croot.getDigest());
+		Tree b = croot.getChildren().get(0);
+		b.getChildren().add(b.getChildren().remove(0));
+		TreeUtils.computeDigest(croot, g);
+		assertFalse(root.getDigest() == croot.getDigest());
+		assertTrue(root.getChildren().get(1).getDigest() == croot.getChildren().get(1).getDigest());
+	}
+
+	@Test
+	public void testRollingLongDigestOfCollidingHashCodes() {
+		// "Aa" and "BB" have the same String.hashCode(), so do "AaAa" and "BBBB".
+		DigestGenerator g = new DigestGenerator.RollingLongHashGenerator();
+		Tree aa = new Tree(1, "Aa");
+		Tree bb = new Tree(1, "BB");
+		aa.refresh();
+		bb.refresh();
+		TreeUtils.computeDigest(aa, g);
+		TreeUtils.computeDigest(bb, g);
+		assertFalse(aa.getDigest() == bb.getDigest());
+		Tree aaaa = new Tree(0, "AaAa");
+		aaaa.addChild(new Tree(1, "Aa"));
+		Tree bbbb = new Tree(0, "BBBB");
+		bbbb.addChild(new Tree(1, "BB"));
+		aaaa.refresh();
+		bbbb.refresh();
+		TreeUtils.computeDigest(aaaa, g);
+		TreeUtils.computeDigest(bbbb, g);
+		assertFalse(aaaa.getDigest() == bbbb.getDigest());
+		assertFalse(DigestGenerator.symbolDigest(aa) == DigestGenerator.symbolDigest(bb));
+	}
+
+	@Test
+	public void testRollingRdmDigest() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree croot = root.deepCopy();
+		TreeUtils.computeDigest(root, new DigestGenerator.RollingRdmHashGenerator(42L));
+		TreeUtils.computeDigest(croot, new DigestGenerator.RollingRdmHashGenerator(42L));
+		assertTrue(root.getDigest() == croot.getDigest());
+		TreeUtils.computeDigest(croot, new DigestGenerator.RollingRdmHashGenerator(43L));
+		assertFalse(root.getDigest() == croot.getDigest());
+	}
+
+	@Test
+	public void testRefreshAncestors() {
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		Tree b = root.getChildren().get(0);
+		Tree c = b.getChildren().remove(0);
+		c.setParent(null);
+		b.refreshAncestors();
+		Tree e = root.getChildren().get(1);
+		e.addChild(c);
+		c.refreshDepth();
+		e.refreshAncestors();
+		Tree copy = root.deepCopy();
+		copy.refresh();
+		List<Tree> trees = root.getTrees();
+		List<Tree> copies = copy.getTrees();
+		for (int i = 0; i < trees.size(); i++) {
+			assertEquals(copies.get(i).getSize(), trees.get(i).getSize());
+			assertEquals(copies.get(i).getDepth(), trees.get(i).getDepth());
+			assertEquals(copies.get(i).getHeight(), trees.get(i).getHeight());
+			assertEquals(copies.get(i).getDigest(), trees.get(i).getDigest());
+		}
+		assertTrue(c.isDescendantOf(e));
+		assertFalse(c.isDescendantOf(b));
+		assertEquals(e, root.getPreOrderTree(3));
+	}
+
+	@Test
+	public void testRefreshAncestorsWithGenerator() {
+		DigestGenerator g = new DigestGenerator.RollingRdmHashGenerator(42L);
+		Tree root = TreeIoUtils.fromXmlFile(DUMMY_SRC);
+		TreeUtils.computeMetrics(root, g);
+		Tree b = root.getChildren().get(0);
+		b.getChildren().get(0).setLabel("x");
+		b.getChildren().get(0).refreshAncestors(g);
+		Tree copy = root.deepCopy();
+		TreeUtils.computeMetrics(copy, g);
+		List<Tree> trees = root.getTrees();
+		List<Tree> copies = copy.getTrees();
+		for (int i = 0; i < trees.size(); i++) assertEquals(copies.get(i).getDigest(), trees.get(i).getDigest());
+	}
+
 	@Test
 	public void testRemoveCompletelyMappedDescendants() {
 		Tree root = TreeIoUtils.fromXmlFile(DUMMY_DST);
-		root.getChildren().get(0).setMatched(true);
-		root.getChildren().get(0).getChildren().get(0).getChildren().get(0).setMatched(true);
-		root.getChildren().get(1).setMatched(true);
-		root.getChildren().get(1).getChildren().get(0).setMatched(true);
-		root = TreeUtils.removeCompletelyMapped(root);
+		BitSet matched = new BitSet();
+		matched.set(root.getChildren().get(0).getId());
+		matched.set(root.getChildren().get(0).getChildren().get(0).getChildren().get(0).getId());
+		matched.set(root.getChildren().get(1).getId());
+		matched.set(root.getChildren().get(1).getChildren().get(0).getId());
+		root = TreeUtils.removeCompletelyMapped(root, matched);
 		TreeUtils.computeSize(root);
 		assertTrue(root.getSize() == 5);
 	}
@@ -0,0 +1,114 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.matchers.CompositeMatcher;
+import fr.labri.gumtree.matchers.CompositeMatchers;
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.MatcherFactories;
+import fr.labri.gumtree.matchers.MatcherFactory;
+import fr.labri.gumtree.matchers.heuristic.TrimmingMatcher;
+import fr.labri.gumtree.matchers.heuristic.gt.CompleteBottomUpMatcher;
+import fr.labri.gumtree.matchers.heuristic.gt.GreedySubtreeMatcher;
+import fr.labri.gumtree.tree.Tree;
+import fr.labri.gumtree.tree.TreeUtils;
+
+public class TestTrimmingMatcher {
+
+	@Test
+	public void testPrefixAndSuffix() {
+		Tree src = tree("1");
+		Tree dst = tree("2");
+		Matcher m = new TrimmingMatcher(src, dst);
+		m.match();
+		assertEquals(5, m.getMappings().size());
+		for (int i: new int[] { 0, 2 })
+			for (int j = 0; j < src.getChildren().get(i).getSize(); j++)
+				assertTrue(m.getMappings().has(src.getChildren().get(i).getTrees().get(j), dst.getChildren().get(i).getTrees().get(j)));
+		assertFalse(m.getMappings().hasSrc(src));
+		assertFalse(m.getMappings().hasSrc(src.getChildren().get(1)));
+	}
+
+	@Test
+	public void testIdenticalRoots() {
+		Tree src = tree("1");
+		Tree dst = tree("1");
+		Matcher m = new TrimmingMatcher(src, dst);
+		m.match();
+		assertEquals(src.getSize(), m.getMappings().size());
+		m = MatcherFactories.newMatcher(src, dst);
+		m.match();
+		assertEquals(src.getSize(), m.getMappings().size());
+	}
+
+	@Test
+	public void testSameMappingsAsWithoutTrimming() {
+		// Clones of the trimmed children are also present next to them.
+		assertSameMappings(root(a(), a(), x("x")), root(a(), x("y")));
+		assertSameMappings(root(x("x"), a(), a()), root(x("y"), a()));
+		assertSameMappings(root(a(), x("x"), a()), root(a(), x("y"), a(), a()));
+		assertSameMappings(root(a(), a(), x("x"), a()), root(a(), x("y"), a()));
+		Random rdm = new Random(5L);
+		for (int k = 0; k < 100; k++) {
+			Tree src = RandomTrees.tree(rdm, 10 + rdm.nextInt(80), 2);
+			assertSameMappings(src, RandomTrees.edit(rdm, src, 2, 1 + rdm.nextInt(5)));
+		}
+	}
+
+	private static void assertSameMappings(Tree src, Tree dst) {
+		Matcher gumtree = new CompositeMatchers.GumTreeMatcherFactory().newMatcher(src, dst);
+		gumtree.match();
+		Matcher untrimmed = new CompositeMatcher(src, dst, new MatcherFactory[] {
+				new GreedySubtreeMatcher.GreedySubtreeMatcherFactory(),
+				new CompleteBottomUpMatcher.CompleteBottumUpMatcherFactory() });
+		untrimmed.match();
+		assertArrayEquals(RandomTrees.mappedIds(untrimmed.getMappings(), src), RandomTrees.mappedIds(gumtree.getMappings(), src));
+	}
+
+	private static Tree root(Tree... children) {
+		Tree root = new Tree(0);
+		for (Tree child: children) root.addChild(child);
+		root.refresh();
+		TreeUtils.postOrderNumbering(root);
+		return root;
+	}
+
+	private static Tree a() {
+		Tree a = new Tree(1);
+		a.addChild(new Tree(2, "a"));
+		a.addChild(new Tree(2, "b"));
+		return a;
+	}
+
+	private static Tree x(String label) {
+		Tree x = new Tree(1);
+		x.addChild(new Tree(2, "c"));
+		x.addChild(new Tree(3, label));
+		return x;
+	}
+
+	private static Tree tree(String label) {
+		Tree root = new Tree(0);
+		Tree a = new Tree(1);
+		a.addChild(new Tree(2, "x"));
+		a.addChild(new Tree(2, "y"));
+		Tree b = new Tree(1);
+		b.addChild(new Tree(2, label));
+		Tree c = new Tree(1);
+		c.addChild(new Tree(2, "z"));
+		root.addChild(a);
+		root.addChild(b);
+		root.addChild(c);
+		root.refresh();
+		TreeUtils.postOrderNumbering(root);
+		return root;
+	}
+
+}
@@ -0,0 +1,42 @@
+package fr.labri.gumtree.test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.labri.gumtree.matchers.Matcher;
+import fr.labri.gumtree.matchers.optimal.zs.ZsMatcher;
+import fr.labri.gumtree.tree.Tree;
+
+public class TestZsMatcher {
+
+	@Test
+	public void testReusedWorkspaceSameAsFreshWorkspace() throws InterruptedException {
+		Random rdm = new Random(11L);
+		int[][] shapes = { { 200, 6 }, { 6, 200 }, { 80, 80 }, { 2, 3 }, { 30, 150 }, { 200, 6 } };
+		for (int[] shape: shapes) {
+			final Tree src = RandomTrees.tree(rdm, shape[0], 1);
+			final Tree dst = RandomTrees.edit(rdm, RandomTrees.tree(rdm, shape[1], 1), 1, 3);
+			// A new thread has a new workspace.
+			final int[][] expected = new int[1][];
+			Thread fresh = new Thread() {
+				@Override
+				public void run() {
+					expected[0] = mappedIds(src, dst);
+				}
+			};
+			fresh.start();
+			fresh.join();
+			assertArrayEquals(expected[0], mappedIds(src, dst));
+		}
+	}
+
+	private static int[] mappedIds(Tree src, Tree dst) {
+		Matcher m = new ZsMatcher(src, dst);
+		m.match();
+		return RandomTrees.mappedIds(m.getMappings(), src);
+	}
+
+}